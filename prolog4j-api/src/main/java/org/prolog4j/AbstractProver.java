@@ -23,7 +23,33 @@
  */
 package org.prolog4j;
 
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Serializable;
+import java.io.StringReader;
+import java.lang.ref.Cleaner;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 //import java.lang.ref.Reference;
 //import java.lang.ref.ReferenceQueue;
 //import java.util.HashMap;
@@ -49,10 +75,426 @@ public abstract class AbstractProver implements Prover, Serializable {
 	/** Class version for serialization. */
 	private static final long serialVersionUID = 1L;
 
+	/** 
+	 * The cache of the goals solved by {@link #solve(String, Object...)}, 
+	 * created lazily.
+	 */
+	private transient volatile QueryCache queryCache;
+
+	/**
+	 * Solves the goal by a prepared query taken from the query cache of the
+	 * prover, so recurring goals are parsed only once.
+	 * 
+	 * @param <A> the type of an element of the solutions
+	 * @param goal the Prolog goal
+	 * @param actualArgs the actual arguments of the goal
+	 * @return an object for traversing the solutions
+	 */
 	@Override
 	public final <A> Solution<A> solve(String goal, Object... actualArgs) {
 //		reclaimObsoleteFacts();
-		return query(goal).solve(actualArgs);
+		return getQueryCache().get(this, goal).solve(this, actualArgs);
+	}
+
+	/**
+	 * Returns the cache of the goals solved by 
+	 * {@link #solve(String, Object...)}. By default every prover has its own
+	 * cache.
+	 * 
+	 * @return the query cache of the prover
+	 */
+	public QueryCache getQueryCache() {
+		QueryCache cache = queryCache;
+		if (cache == null) {
+			synchronized (this) {
+				cache = queryCache;
+				if (cache == null) {
+					queryCache = cache = new QueryCache();
+				}
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Sets the cache of the goals solved by {@link #solve(String, Object...)}.
+	 * Several provers can share the same cache, e.g. the 
+	 * {@link QueryCache#getSharedCache() shared cache}. Caching can be 
+	 * disabled by a cache of zero size.
+	 * 
+	 * @param queryCache the query cache to be used, or <tt>null</tt> for a 
+	 *        new cache of the prover
+	 */
+	public void setQueryCache(QueryCache queryCache) {
+		this.queryCache = queryCache;
+	}
+
+	/** The registered listeners, or <tt>null</tt> if there is none. */
+	private transient ProverListener[] listeners;
+
+	/** 
+	 * The listener that forwards the events to the registered listeners, or
+	 * <tt>null</tt> if there is none.
+	 */
+	private transient volatile ProverListener listener;
+
+	@Override
+	public synchronized void addListener(ProverListener listener) {
+		if (listeners == null) {
+			setListeners(new ProverListener[]{listener});
+			return;
+		}
+		ProverListener[] extended = Arrays.copyOf(listeners, listeners.length + 1);
+		extended[listeners.length] = listener;
+		setListeners(extended);
+	}
+
+	@Override
+	public synchronized void removeListener(ProverListener listener) {
+		if (listeners == null) {
+			return;
+		}
+		List<ProverListener> remaining = new ArrayList<ProverListener>(Arrays.asList(listeners));
+		if (remaining.remove(listener)) {
+			setListeners(remaining.toArray(new ProverListener[remaining.size()]));
+		}
+	}
+
+	/**
+	 * Replaces the registered listeners.
+	 * 
+	 * @param listeners the new listeners
+	 */
+	private void setListeners(ProverListener[] listeners) {
+		switch (listeners.length) {
+		case 0:
+			this.listeners = null;
+			listener = null;
+			break;
+		case 1:
+			this.listeners = listeners;
+			listener = listeners[0];
+			break;
+		default:
+			this.listeners = listeners;
+			listener = new ListenerChain(listeners);
+		}
+	}
+
+	/**
+	 * Returns the listener to notify of the events of the prover. 
+	 * 
+	 * @return the listener that forwards the events to the registered 
+	 *         listeners, or <tt>null</tt> if there is none
+	 */
+	protected final ProverListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Returns the start time of parsing a goal, for {@link #parsed(Query, long)}.
+	 * 
+	 * @return the current time in nanoseconds, or zero if there is no listener
+	 */
+	protected final long parseStart() {
+		return listener == null ? 0L : System.nanoTime();
+	}
+
+	/**
+	 * Reports that a query has been created to the listeners, if any, and to
+	 * the flight recorder.
+	 * 
+	 * @param <Q> the type of the query
+	 * @param query the query created
+	 * @param start the start time of parsing returned by {@link #parseStart()}
+	 * @return the query
+	 */
+	protected final <Q extends Query> Q parsed(Q query, long start) {
+		query.parsed();
+		ProverListener l = listener;
+		if (l != null && start != 0L) {
+			l.onParse(query.getGoalPattern(), System.nanoTime() - start);
+		}
+		return query;
+	}
+
+	/**
+	 * Forwards the events to several listeners.
+	 */
+	private static final class ListenerChain implements ProverListener {
+
+		/** The listeners to forward the events to. */
+		private final ProverListener[] listeners;
+
+		/**
+		 * Creates a chain of listeners.
+		 * 
+		 * @param listeners the listeners to forward the events to
+		 */
+		ListenerChain(ProverListener[] listeners) {
+			this.listeners = listeners;
+		}
+
+		@Override
+		public void onParse(String goal, long nanos) {
+			for (ProverListener l: listeners) {
+				l.onParse(goal, nanos);
+			}
+		}
+
+		@Override
+		public void onSolveStart(String goal) {
+			for (ProverListener l: listeners) {
+				l.onSolveStart(goal);
+			}
+		}
+
+		@Override
+		public void onSolution(String goal, boolean success, long nanos) {
+			for (ProverListener l: listeners) {
+				l.onSolution(goal, success, nanos);
+			}
+		}
+
+		@Override
+		public void onFetch(String goal, boolean found, long nanos) {
+			for (ProverListener l: listeners) {
+				l.onFetch(goal, found, nanos);
+			}
+		}
+
+		@Override
+		public void onConvert(String goal, long nanos) {
+			for (ProverListener l: listeners) {
+				l.onConvert(goal, nanos);
+			}
+		}
+
+		@Override
+		public void onClose(String goal, int solutions) {
+			for (ProverListener l: listeners) {
+				l.onClose(goal, solutions);
+			}
+		}
+	}
+
+	/** The number of the worker threads created so far, used for naming them. */
+	private static final AtomicInteger WORKER_COUNT = new AtomicInteger();
+
+	/** Creates the worker threads of the provers. */
+	private static final ThreadFactory WORKER_FACTORY = new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, 
+					"prolog4j-prover-" + WORKER_COUNT.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	/** Shuts down the executors of the provers that are garbage collected. */
+	private static final Cleaner EXECUTOR_CLEANER = Cleaner.create();
+
+	/** The executor of the goals solved asynchronously, created lazily. */
+	private transient ThreadPoolExecutor executor;
+
+	@Override
+	public <A> CompletableFuture<Solution<A>> solveAsync(final String goal, 
+			final Object... actualArgs) {
+		return Query.submit(getExecutor(), new Supplier<Solution<A>>() {
+			@Override
+			public Solution<A> get() {
+				return solve(goal, actualArgs);
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				halt();
+			}
+		});
+	}
+
+	/**
+	 * Returns the executor of the prover. It runs the tasks on a single 
+	 * daemon thread, which is not stopped when it is idle, since the engine
+	 * of the prover may be bound to it (e.g. the open queries of JPL). It is
+	 * stopped by {@link #shutdown()}, or when the prover is garbage 
+	 * collected.
+	 * 
+	 * @return the executor of the prover
+	 */
+	@Override
+	public synchronized Executor getExecutor() {
+		if (executor == null) {
+			final ThreadPoolExecutor worker = new ThreadPoolExecutor(1, 1, 
+					0L, TimeUnit.MILLISECONDS, 
+					new LinkedBlockingQueue<Runnable>(), WORKER_FACTORY);
+			EXECUTOR_CLEANER.register(this, new Runnable() {
+				@Override
+				public void run() {
+					worker.shutdown();
+				}
+			});
+			executor = worker;
+		}
+		return executor;
+	}
+
+	@Override
+	public synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Stops the resolution running in the engine, if any. It is called when
+	 * an asynchronous solution is cancelled or the time limit of a solution
+	 * has expired. By default it does nothing, the
+	 * implementations whose engine can be halted from another thread override
+	 * it.
+	 */
+	protected void halt() {
+	}
+
+	/** The time limit of finding a solution, or <tt>null</tt>. */
+	private Duration timeout;
+
+	/** The maximal number of inferences of finding a solution, or zero. */
+	private long maxInferences;
+
+	/** Halts the engines whose time limit has expired. */
+	private static final ScheduledThreadPoolExecutor WATCHDOG;
+
+	static {
+		WATCHDOG = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "prolog4j-watchdog");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		WATCHDOG.setRemoveOnCancelPolicy(true);
+	}
+
+	@Override
+	public void setTimeout(Duration timeout) {
+		this.timeout = timeout;
+	}
+
+	@Override
+	public Duration getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Sets the maximal number of inferences of finding a solution. By default
+	 * only removing the limit is supported, the implementations whose engine
+	 * can count its inferences override it.
+	 * 
+	 * @param maxInferences the inference limit, or zero to remove the limit
+	 * @throws UnsupportedOperationException if <tt>maxInferences</tt> is 
+	 *         positive
+	 */
+	@Override
+	public void setMaxInferences(long maxInferences) {
+		if (maxInferences > 0) {
+			throw new UnsupportedOperationException(
+					"The engine does not support inference limits.");
+		}
+		this.maxInferences = 0;
+	}
+
+	@Override
+	public long getMaxInferences() {
+		return maxInferences;
+	}
+
+	/**
+	 * Stores the inference limit for the implementations that support it.
+	 * 
+	 * @param maxInferences the inference limit, or zero to remove the limit
+	 */
+	protected final void storeMaxInferences(long maxInferences) {
+		this.maxInferences = Math.max(maxInferences, 0);
+	}
+
+	/**
+	 * Runs a call of the engine that searches for a solution of a goal within
+	 * the given time limit. If the time limit expires, the engine is 
+	 * {@link #halt() halted} and a {@link LimitExceededException} is thrown.
+	 * The call is run on the current thread, so it can be used for the engines
+	 * bound to a thread as well.
+	 * 
+	 * @param <T> the type of the result of the call
+	 * @param goal the goal being solved, for reporting; it is converted to
+	 *        text only if the time limit expires
+	 * @param timeout the time limit of the query, or <tt>null</tt> if the 
+	 *        time limit of the prover applies
+	 * @param engineCall the call of the engine
+	 * @return the result of the call
+	 * @throws LimitExceededException if the time limit has expired
+	 */
+	protected <T> T solveWithin(Object goal, Duration timeout, 
+			Supplier<T> engineCall) {
+		final Duration limit = timeout != null ? timeout : this.timeout;
+		if (limit == null || limit.isZero() || limit.isNegative()) {
+			return engineCall.get();
+		}
+		Alarm alarm = new Alarm();
+		ScheduledFuture<?> future = 
+			WATCHDOG.schedule(alarm, limit.toNanos(), TimeUnit.NANOSECONDS);
+		T result;
+		try {
+			result = engineCall.get();
+		} catch (RuntimeException e) {
+			if (alarm.disarm()) {
+				LimitExceededException lee = 
+					new LimitExceededException(String.valueOf(goal), limit);
+				lee.initCause(e);
+				throw lee;
+			}
+			throw e;
+		} finally {
+			future.cancel(false);
+		}
+		if (alarm.disarm()) {
+			throw new LimitExceededException(String.valueOf(goal), limit);
+		}
+		return result;
+	}
+
+	/**
+	 * Halts the engine when the time limit of a call has expired, unless the
+	 * call has already returned.
+	 */
+	private final class Alarm implements Runnable {
+
+		/** True if the call is still running. */
+		private boolean armed = true;
+
+		/** True if the engine has been halted. */
+		private boolean fired;
+
+		@Override
+		public synchronized void run() {
+			if (armed) {
+				fired = true;
+				halt();
+			}
+		}
+
+		/**
+		 * Disarms the alarm after the call has returned.
+		 * 
+		 * @return true if the engine has been halted
+		 */
+		synchronized boolean disarm() {
+			armed = false;
+			return fired;
+		}
 	}
 
 //	/**
@@ -70,10 +512,277 @@ public abstract class AbstractProver implements Prover, Serializable {
 //		}
 //	}
 
+	/** 
+	 * The number of changes of the knowledge base made through the prover. 
+	 * The counters are read by the cached queries, possibly on other threads.
+	 */
+	private final AtomicLong modCount = new AtomicLong();
+
+	/** The value of {@link #modCount} at the last change of any predicate. */
+	private final AtomicLong anyModified = new AtomicLong();
+
+	/** The value of {@link #modCount} at the last change, by predicate name. */
+	private final ConcurrentHashMap<String, Long> modified = 
+		new ConcurrentHashMap<String, Long>();
+
+	/** 
+	 * Whether a theory is being loaded by {@link #loadTheory(Path, 
+	 * TheoryLoadListener)}. The change has been recorded for every predicate
+	 * then, so the clauses added are not examined one by one.
+	 */
+	private boolean loading;
+
+	@Override
+	public CachedQuery cached(String goal, String... predicates) {
+		return new CachedQuery(this, goal, predicates);
+	}
+
+	/**
+	 * Records that a predicate of the knowledge base is changed, so that the
+	 * answers of the cached queries depending on it are discarded. It is
+	 * supposed to be called by the methods that change the knowledge base,
+	 * after the change has been made, so that the answers computed by other
+	 * threads during the change are discarded as well.
+	 * 
+	 * @param predicate the name of the predicate, or <tt>null</tt> if it is
+	 *        not known
+	 * @see #cached(String, String...)
+	 */
+	protected void theoryModified(String predicate) {
+		long m = modCount.incrementAndGet();
+		if (predicate == null) {
+			anyModified.accumulateAndGet(m, Math::max);
+		} else {
+			modified.merge(predicate, m, Math::max);
+		}
+	}
+
+	/**
+	 * Records that any predicate of the knowledge base may have changed.
+	 */
+	protected void theoryModified() {
+		theoryModified((String) null);
+	}
+
+	/**
+	 * Records that the predicates of the given clauses are changed. Like 
+	 * {@link #theoryModified(String)}, it is supposed to be called after the
+	 * clauses have been added.
+	 * 
+	 * @param theory the text of the clauses; an element may contain several
+	 *        clauses
+	 */
+	protected void clausesModified(String... theory) {
+		if (loading) {
+			return;
+		}
+		for (String text: theory) {
+			ClauseReader clauses = new ClauseReader(new StringReader(text));
+			try {
+				String clause;
+				while ((clause = clauses.readClause()) != null) {
+					theoryModified(predicateOf(clause));
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of changes made through the prover so far.
+	 * 
+	 * @return the modification count
+	 */
+	long getModCount() {
+		return modCount.get();
+	}
+
+	/**
+	 * Tells whether any of the given predicates has changed since the given 
+	 * modification count.
+	 * 
+	 * @param since the modification count to compare to
+	 * @param predicates the names of the predicates, or an empty array for
+	 *        all predicates
+	 * @return <tt>true</tt> if one of the predicates has changed
+	 */
+	boolean isModifiedSince(long since, String[] predicates) {
+		if (predicates.length == 0) {
+			return modCount.get() != since;
+		}
+		if (anyModified.get() > since) {
+			return true;
+		}
+		for (String predicate: predicates) {
+			Long m = modified.get(predicate);
+			if (m != null && m > since) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the name of the predicate that a clause belongs to.
+	 * 
+	 * @param clause the text of the clause
+	 * @return the name of the predicate, or <tt>null</tt> if it cannot be 
+	 *         determined (e.g. for directives)
+	 */
+	private static String predicateOf(String clause) {
+		String s = clause.trim();
+		if (s.startsWith(":-")) {
+			return null;
+		}
+		int length = s.length();
+		int end = 0;
+		if (length > 0 && s.charAt(0) == '\'') {
+			end = s.indexOf('\'', 1);
+			return end == -1 ? null : s.substring(1, end);
+		}
+		while (end < length && (Character.isLetterOrDigit(s.charAt(end)) 
+				|| s.charAt(end) == '_')) {
+			++end;
+		}
+		return end == 0 ? null : s.substring(0, end);
+	}
+
+	/** The number of clauses added at once by {@link #loadClauses}. */
+	protected static final int LOAD_BATCH = 1000;
+
+	/** The number of bytes read between two progress reports. */
+	private static final int PROGRESS_INTERVAL = 1 << 20;
+
+	@Override
+	public void loadTheory(Path file) throws IOException {
+		loadTheory(file, null);
+	}
+
+	@Override
+	public void loadTheory(Path file, TheoryLoadListener listener) 
+			throws IOException {
+		long totalBytes = Files.size(file);
+		try (ProgressInputStream input = new ProgressInputStream(
+					Files.newInputStream(file), listener, totalBytes);
+				ClauseReader clauses = new ClauseReader(new BufferedReader(
+					new InputStreamReader(input, StandardCharsets.UTF_8)))) {
+			input.clauses = clauses;
+			loading = true;
+			try {
+				loadClauses(clauses);
+			} finally {
+				loading = false;
+				theoryModified();
+			}
+			if (listener != null) {
+				listener.progress(clauses.getClauseCount(), input.bytesRead, totalBytes);
+			}
+		}
+	}
+
+	/**
+	 * Adds the clauses to the knowledge base. By default the clauses are
+	 * added by {@link #addTheory(String...)} in batches of {@link #LOAD_BATCH}
+	 * clauses. The implementations whose <tt>addTheory</tt> does not append 
+	 * to the existing predicates have to override it. While the clauses are 
+	 * loaded, {@link #clausesModified(String...)} does nothing, since every
+	 * predicate is recorded as changed at the end.
+	 * 
+	 * @param clauses the clauses to load
+	 * @throws IOException if reading the clauses fails
+	 */
+	protected void loadClauses(ClauseReader clauses) throws IOException {
+		List<String> batch = new ArrayList<String>(LOAD_BATCH);
+		String clause;
+		while ((clause = clauses.readClause()) != null) {
+			batch.add(clause);
+			if (batch.size() == LOAD_BATCH) {
+				addTheory(batch.toArray(new String[LOAD_BATCH]));
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			addTheory(batch.toArray(new String[batch.size()]));
+		}
+	}
+
+	/**
+	 * Counts the bytes read from a file and reports the progress of loading
+	 * to a listener after every {@link #PROGRESS_INTERVAL} bytes.
+	 */
+	private static final class ProgressInputStream extends FilterInputStream {
+
+		/** The listener to report to, or <tt>null</tt>. */
+		private final TheoryLoadListener listener;
+
+		/** The size of the file. */
+		private final long totalBytes;
+
+		/** The reader that counts the clauses read from the stream. */
+		private ClauseReader clauses;
+
+		/** The number of bytes read so far. */
+		private long bytesRead;
+
+		/** The number of bytes read at the last report. */
+		private long reported;
+
+		/**
+		 * Creates a stream.
+		 * 
+		 * @param input the stream of the file
+		 * @param listener the listener to report to, or <tt>null</tt>
+		 * @param totalBytes the size of the file
+		 */
+		ProgressInputStream(InputStream input, TheoryLoadListener listener, 
+				long totalBytes) {
+			super(input);
+			this.listener = listener;
+			this.totalBytes = totalBytes;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				count(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				count(n);
+			}
+			return n;
+		}
+
+		/**
+		 * Counts the bytes read and reports the progress if needed.
+		 * 
+		 * @param n the number of bytes read
+		 */
+		private void count(int n) {
+			bytesRead += n;
+			if (listener != null && bytesRead - reported >= PROGRESS_INTERVAL) {
+				reported = bytesRead;
+				listener.progress(clauses.getClauseCount(), bytesRead, totalBytes);
+			}
+		}
+
+	}
+
 	@Override
 	public void assertz(String fact, Object... args) {
 		Query q = query("assertz(" + fact.substring(0, fact.lastIndexOf('.')) + ").");
-		q.solve(args);
+		try {
+			q.solve(args);
+		} finally {
+			theoryModified(predicateOf(fact));
+		}
 //		for (Reference ref: q.getWeakReferences()) {
 //			List<Query> rules = weakFacts.get(ref);
 //			if (rules == null) {
@@ -84,6 +793,45 @@ public abstract class AbstractProver implements Prover, Serializable {
 //		}
 	}
 
+	/**
+	 * Asserts each fact by solving the same prepared <tt>assertz/1</tt> goal,
+	 * so the goal is parsed only once. The implementations may override it to
+	 * add the facts to the database of the engine directly.
+	 * 
+	 * @param facts the facts to assert
+	 */
+	@Override
+	public void assertz(Compound... facts) {
+		PreparedQuery q = prepare("assertz(?).");
+		for (Compound fact: facts) {
+			try {
+				q.solve(fact).close();
+			} finally {
+				theoryModified(fact.getFunctor());
+			}
+		}
+	}
+
+	/**
+	 * Asserts each fact by solving the same prepared <tt>assertz/1</tt> goal,
+	 * so the goal is parsed only once. The implementations may override it to
+	 * add the facts to the database of the engine directly.
+	 * 
+	 * @param functor the functor of the facts
+	 * @param rows the arguments of the facts, one array for each fact
+	 */
+	@Override
+	public void assertAll(String functor, Iterable<Object[]> rows) {
+		PreparedQuery q = prepare("assertz(?).");
+		try {
+			for (Object[] row: rows) {
+				q.solve(new Compound(functor, row)).close();
+			}
+		} finally {
+			theoryModified(functor);
+		}
+	}
+
 	@Override
 	public void retract(String fact) {
 		int lastDot = fact.lastIndexOf('.');
@@ -91,7 +839,11 @@ public abstract class AbstractProver implements Prover, Serializable {
 		if (lastDot == -1 || fact.substring(lastDot, length).trim().length() > 1) {
 			lastDot = length;
 		}
-		query("retract(" + fact.substring(0, lastDot) + ").").solve();
+		try {
+			query("retract(" + fact.substring(0, lastDot) + ").").solve();
+		} finally {
+			theoryModified(predicateOf(fact));
+		}
 	}
 	
 	/** The default conversion policy used by the current implementation. */
@@ -165,10 +917,22 @@ public abstract class AbstractProver implements Prover, Serializable {
 			return delegate.term(value);
 		}
 		@Override
+		public Object term(long value) {
+			return delegate.term(value);
+		}
+		@Override
+		public Object term(float value) {
+			return delegate.term(value);
+		}
+		@Override
 		public Object term(double value) {
 			return delegate.term(value);
 		}
 		@Override
+		public Object term(boolean value) {
+			return delegate.term(value);
+		}
+		@Override
 		public Object term(String name) {
 			return delegate.term(name);
 		}
@@ -182,6 +946,10 @@ public abstract class AbstractProver implements Prover, Serializable {
 			return delegate.intValue(term);
 		}
 		@Override
+		public long longValue(Object term) {
+			return delegate.longValue(term);
+		}
+		@Override
 		public double doubleValue(Object term) {
 			return delegate.doubleValue(term);
 		}
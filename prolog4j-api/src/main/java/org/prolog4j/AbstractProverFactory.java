@@ -23,8 +23,8 @@
  */
 package org.prolog4j;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Abstract implementation of the IProverFactory interface. It creates a prover
@@ -38,18 +38,22 @@ public abstract class AbstractProverFactory implements IProverFactory {
 	private final ConversionPolicy conversionPolicy = createConversionPolicy();
 	
 	/** Stores the provers assigned to their names. */
-	private Map<String, Prover> proverMap = new HashMap<String, Prover>();
+	private final ConcurrentMap<String, Prover> proverMap = 
+		new ConcurrentHashMap<String, Prover>();
 
+	/**
+	 * Returns the prover of the given name. The prover is created at the 
+	 * first request, at most once, even if it is requested by several threads
+	 * at the same time. Looking up an existing prover does not lock.
+	 * 
+	 * @param name the name of the prover
+	 * @return the prover of the given name
+	 */
 	@Override
 	public Prover getProver(String name) {
-		Prover prover = null;
-		// protects against concurrent access of the proverMap
-		synchronized (this) {
-			prover = proverMap.get(name);
-			if (prover == null) {
-				prover = getProver();
-				proverMap.put(name, prover);
-			}
+		Prover prover = proverMap.get(name);
+		if (prover == null) {
+			prover = proverMap.computeIfAbsent(name, key -> getProver());
 		}
 		return prover;
 	}
@@ -0,0 +1,488 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents a Prolog query whose answers are memoized. It is supposed to be
+ * created by {@link Prover#cached(String, String...)}.
+ * <p>
+ * The complete answer set of the goal is computed at the first invocation for
+ * a tuple of actual arguments, and the later invocations with equal arguments
+ * traverse the stored answers, without solving the goal again. The answers 
+ * are the values of the named variables of the goal, converted to Java 
+ * objects by the conversion policy of the prover. Since the same answers are
+ * returned to every caller, lists, arrays and compound terms are copied when
+ * they are read.
+ * <p>
+ * The stored answers are discarded when the knowledge base is changed through
+ * the prover by <tt>assertz</tt>, <tt>retract</tt>, <tt>addTheory</tt> or 
+ * <tt>loadTheory</tt>, if the change affects one of the predicates that the 
+ * query depends on. If no predicates were specified, every change discards 
+ * them. Changes made by Prolog goals (e.g. by calling <tt>assertz/1</tt> from
+ * a rule) are not tracked; {@link #invalidate()} has to be called after them.
+ * <p>
+ * By default at most {@value #DEFAULT_MAX_SIZE} argument tuples are stored, 
+ * the least recently used is evicted first. The answers can also be given a 
+ * time to live.
+ */
+public class CachedQuery {
+
+	/** The default maximal number of argument tuples whose answers are stored. */
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+	/** The prover that solves the query. */
+	private final AbstractProver prover;
+
+	/** The query that computes the answers. */
+	private final PreparedQuery query;
+
+	/** 
+	 * The names of the predicates the answers depend on. Empty if the answers
+	 * depend on every predicate.
+	 */
+	private final String[] predicates;
+
+	/** The stored answers in access order, by the actual arguments. */
+	private final LinkedHashMap<List<Object>, Answers> answers;
+
+	/** The maximal number of argument tuples whose answers are stored. */
+	private int maxSize = DEFAULT_MAX_SIZE;
+
+	/** The time to live of the answers in nanoseconds, or zero. */
+	private long timeToLive;
+
+	/** The number of invocations that used stored answers. */
+	private long hitCount;
+
+	/** The number of invocations that had to solve the goal. */
+	private long missCount;
+
+	/**
+	 * The answer set computed for a tuple of actual arguments.
+	 */
+	private static final class Answers {
+
+		/** The names of the variables whose values are stored. */
+		private final String[] variables;
+
+		/** The values of the variables in each solution. */
+		private final List<Object[]> rows;
+
+		/** The modification count of the knowledge base at the computation. */
+		private final long modCount;
+
+		/** The time of the computation, by {@link System#nanoTime()}. */
+		private final long created;
+
+		/**
+		 * Creates an answer set.
+		 * 
+		 * @param variables the names of the variables
+		 * @param rows the values of the variables in each solution
+		 * @param modCount the modification count of the knowledge base
+		 */
+		Answers(String[] variables, List<Object[]> rows, long modCount) {
+			this.variables = variables;
+			this.rows = rows;
+			this.modCount = modCount;
+			this.created = System.nanoTime();
+		}
+
+	}
+
+	/**
+	 * Creates a cached query.
+	 * 
+	 * @param prover the prover that solves the query
+	 * @param goal the Prolog goal
+	 * @param predicates the names of the predicates the answers depend on, 
+	 *        optionally followed by their arity, e.g. <tt>parent/2</tt>
+	 */
+	CachedQuery(AbstractProver prover, String goal, String... predicates) {
+		this.prover = prover;
+		this.query = prover.prepare(goal);
+		this.predicates = new String[predicates.length];
+		for (int i = 0; i < predicates.length; ++i) {
+			int slash = predicates[i].lastIndexOf('/');
+			this.predicates[i] = slash == -1 
+					? predicates[i] : predicates[i].substring(0, slash);
+		}
+		answers = new LinkedHashMap<List<Object>, Answers>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, Answers> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Solves the Prolog goal, or returns the stored answers if they are still
+	 * valid. The actual arguments will be bound to the placeholders before 
+	 * solving the goal. They are compared to the earlier arguments by 
+	 * <tt>equals</tt>. Lists, arrays and compound terms are copied for the 
+	 * comparison, so changing them afterwards does not affect the stored 
+	 * answers.
+	 * 
+	 * @param <A>
+	 *            the type of an element of the solutions
+	 * @param actualArgs
+	 *            the actual arguments of the goal
+	 * @return an object for traversing the solutions
+	 */
+	public synchronized <A> Solution<A> solve(Object... actualArgs) {
+		List<Object> key = snapshot(actualArgs);
+		Answers a = answers.get(key);
+		if (a != null && isValid(a)) {
+			++hitCount;
+			return new CachedSolution<A>(a);
+		}
+		++missCount;
+		long modCount = prover.getModCount();
+		List<Object[]> rows = new ArrayList<Object[]>();
+		String[] variables;
+		try (Solution<Object> solution = query.solve(prover, actualArgs)) {
+			variables = variables(solution);
+			SolutionIterator<Object> it = solution.iterator();
+			while (it.hasNext()) {
+				it.next();
+				Object[] row = new Object[variables.length];
+				for (int i = 0; i < row.length; ++i) {
+					row[i] = it.get(variables[i]);
+				}
+				rows.add(row);
+			}
+		}
+		a = new Answers(variables, rows, modCount);
+		answers.put(key, a);
+		return new CachedSolution<A>(a);
+	}
+
+	/**
+	 * Returns the named variables of the goal reported by the engine. The
+	 * placeholders are left out, since their values are known in advance.
+	 * 
+	 * @param solution the solution of the goal
+	 * @return the names of the variables
+	 */
+	private String[] variables(Solution<?> solution) {
+		List<String> vars = new ArrayList<String>(solution.getVariables());
+		vars.removeAll(query.getPlaceholderNames());
+		return vars.toArray(new String[vars.size()]);
+	}
+
+	/**
+	 * Copies a stored value of a variable recursively, so that the stored 
+	 * answers cannot be changed through the values returned to the callers.
+	 * 
+	 * @param value the value of a variable
+	 * @return a copy of a list, an array or a compound term, the value itself
+	 *         otherwise
+	 */
+	private static Object copy(Object value) {
+		if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			List<Object> copy = new ArrayList<Object>(list.size());
+			for (Object element: list) {
+				copy.add(copy(element));
+			}
+			return copy;
+		}
+		if (value instanceof Object[]) {
+			Object[] array = ((Object[]) value).clone();
+			for (int i = 0; i < array.length; ++i) {
+				array[i] = copy(array[i]);
+			}
+			return array;
+		}
+		if (value instanceof Compound) {
+			Compound compound = (Compound) value;
+			return new Compound(compound.getFunctor(), 
+					(Object[]) copy(compound.getArgs()));
+		}
+		return value;
+	}
+
+	/**
+	 * Copies the arguments recursively, so that the key of the stored answers
+	 * is not changed if the caller modifies a list, an array or a compound 
+	 * term afterwards. Arrays are copied to lists, since they are converted 
+	 * to the same terms.
+	 * 
+	 * @param args the arguments of the query
+	 * @return an unmodifiable copy of the arguments
+	 */
+	private static List<Object> snapshot(Object[] args) {
+		Object[] copy = new Object[args.length];
+		for (int i = 0; i < args.length; ++i) {
+			copy[i] = snapshot(args[i]);
+		}
+		return Collections.unmodifiableList(Arrays.asList(copy));
+	}
+
+	/**
+	 * Copies an argument recursively.
+	 * 
+	 * @param arg the argument of the query
+	 * @return the copy of lists, arrays and compound terms, the argument 
+	 *         itself otherwise
+	 */
+	private static Object snapshot(Object arg) {
+		if (arg instanceof Object[]) {
+			return snapshot((Object[]) arg);
+		}
+		if (arg instanceof List) {
+			return snapshot(((List<?>) arg).toArray());
+		}
+		if (arg instanceof Compound) {
+			Compound compound = (Compound) arg;
+			Object[] args = compound.getArgs();
+			Object[] copy = new Object[args.length];
+			for (int i = 0; i < args.length; ++i) {
+				copy[i] = snapshot(args[i]);
+			}
+			return new Compound(compound.getFunctor(), copy);
+		}
+		return arg;
+	}
+
+	/**
+	 * Tells whether the stored answers can be used.
+	 * 
+	 * @param a the stored answers
+	 * @return <tt>true</tt> if they have not expired and the predicates they
+	 *         depend on have not changed since they were computed
+	 */
+	private boolean isValid(Answers a) {
+		if (timeToLive > 0 && System.nanoTime() - a.created > timeToLive) {
+			return false;
+		}
+		return !prover.isModifiedSince(a.modCount, predicates);
+	}
+
+	/**
+	 * Discards all the stored answers.
+	 */
+	public synchronized void invalidate() {
+		answers.clear();
+	}
+
+	/**
+	 * Sets the maximal number of argument tuples whose answers are stored.
+	 * 
+	 * @param maxSize the maximal number of argument tuples
+	 * @return the same query instance
+	 */
+	public synchronized CachedQuery setMaxSize(int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Negative cache size: " + maxSize);
+		}
+		this.maxSize = maxSize;
+		while (answers.size() > maxSize) {
+			answers.remove(answers.keySet().iterator().next());
+		}
+		return this;
+	}
+
+	/**
+	 * Sets the time after which the stored answers are computed again. Zero
+	 * means that they do not expire.
+	 * 
+	 * @param duration the time to live
+	 * @param unit the unit of <tt>duration</tt>
+	 * @return the same query instance
+	 */
+	public synchronized CachedQuery setTimeToLive(long duration, TimeUnit unit) {
+		this.timeToLive = unit.toNanos(duration);
+		return this;
+	}
+
+	/**
+	 * Returns the number of argument tuples whose answers are stored.
+	 * 
+	 * @return the number of stored answer sets
+	 */
+	public synchronized int size() {
+		return answers.size();
+	}
+
+	/**
+	 * Returns the number of invocations that used stored answers.
+	 * 
+	 * @return the number of hits
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Returns the number of invocations that had to solve the goal.
+	 * 
+	 * @return the number of misses
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Traverses stored answers.
+	 * 
+	 * @param <S> the type of the values of the variable of special interest
+	 */
+	private static final class CachedSolution<S> extends Solution<S> {
+
+		/** The names of the variables. */
+		private final String[] variables;
+
+		/** The values of the variables in each solution. */
+		private final List<Object[]> rows;
+
+		/** The index of the current solution. */
+		private int index;
+
+		/**
+		 * Creates a solution.
+		 * 
+		 * @param answers the stored answers
+		 */
+		CachedSolution(Answers answers) {
+			this.variables = answers.variables;
+			this.rows = answers.rows;
+			if (variables.length > 0) {
+				on(variables[variables.length - 1]);
+			}
+		}
+
+		@Override
+		public boolean isSuccess() {
+			return !rows.isEmpty();
+		}
+
+		@Override
+		public List<String> getVariables() {
+			return Collections.unmodifiableList(Arrays.asList(variables));
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <A> A get(String variable) {
+			if (index >= rows.size()) {
+				throw new NoSuchElementException();
+			}
+			for (int i = 0; i < variables.length; ++i) {
+				if (variables[i].equals(variable)) {
+					return (A) copy(rows.get(index)[i]);
+				}
+			}
+			throw new UnknownVariableException(variable);
+		}
+
+		/**
+		 * The values are stored after the default conversion, so they can 
+		 * only be cast to the required type.
+		 */
+		@Override
+		public <A> A get(String variable, Class<A> type) {
+			return type.cast(get(variable));
+		}
+
+		/** The slots are the indices of the variables in the rows. */
+		@Override
+		public int slotOf(String variable) {
+			for (int i = 0; i < variables.length; ++i) {
+				if (variables[i].equals(variable)) {
+					return i;
+				}
+			}
+			throw new UnknownVariableException(variable);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <A> A get(int slot) {
+			if (index >= rows.size()) {
+				throw new NoSuchElementException();
+			}
+			return (A) copy(rows.get(index)[slot]);
+		}
+
+		@Override
+		public <A> A get(int slot, Class<A> type) {
+			return type.cast(get(slot));
+		}
+
+		@Override
+		public int getInt(int slot) {
+			return get(slot, Number.class).intValue();
+		}
+
+		@Override
+		public long getLong(int slot) {
+			return get(slot, Number.class).longValue();
+		}
+
+		@Override
+		public double getDouble(int slot) {
+			return get(slot, Number.class).doubleValue();
+		}
+
+		@Override
+		protected boolean fetch() {
+			return ++index < rows.size();
+		}
+
+		// The raw signature is inherited from Solution.
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		@Override
+		public void collect(Collection... collections) {
+			for (Object[] row: rows) {
+				for (int i = 0; i < collections.length; ++i) {
+					collections[i].add(copy(row[i]));
+				}
+			}
+		}
+
+		@Override
+		public List<?>[] toLists() {
+			List<?>[] lists = new List<?>[variables.length];
+			for (int i = 0; i < lists.length; ++i) {
+				lists[i] = new ArrayList<Object>(rows.size());
+			}
+			collect(lists);
+			return lists;
+		}
+
+	}
+
+}
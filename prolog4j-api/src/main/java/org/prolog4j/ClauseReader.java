@@ -0,0 +1,301 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+
+/**
+ * Splits a Prolog text to clauses, without parsing them. The clauses are read
+ * from the underlying reader one by one, so a theory can be processed clause
+ * by clause, without keeping the whole text in the memory.
+ * <p>
+ * A clause ends at an end token, i.e. at a full stop that is followed by a 
+ * layout character, a comment or the end of the text. Full stops inside 
+ * quoted atoms and strings, character literals (<tt>0'.</tt>), comments, 
+ * numbers (<tt>1.5</tt>) and symbolic atoms (<tt>=..</tt>) do not end the 
+ * clause. Comments and layout characters between the clauses are skipped.
+ */
+public class ClauseReader implements Closeable {
+
+	/** The characters that symbolic atoms consist of. */
+	private static final String SYMBOL_CHARS = "+-*/\\^<>=~:.?@#&$";
+
+	/** The underlying reader. */
+	private final PushbackReader reader;
+
+	/** The text of the current clause. */
+	private final StringBuilder clause = new StringBuilder();
+
+	/** The number of clauses read so far. */
+	private long clauseCount;
+
+	/**
+	 * Creates a clause reader.
+	 * 
+	 * @param reader the reader to read the Prolog text from
+	 */
+	public ClauseReader(Reader reader) {
+		this.reader = new PushbackReader(reader, 2);
+	}
+
+	/**
+	 * Reads the next clause. The returned text contains the terminating full
+	 * stop. If the text ends without one, the rest of the text is returned as
+	 * it is.
+	 * 
+	 * @return the next clause or <tt>null</tt> if there are no more clauses
+	 * @throws IOException if reading from the underlying reader fails
+	 */
+	public String readClause() throws IOException {
+		if (!skipLayout()) {
+			return null;
+		}
+		clause.setLength(0);
+		int c;
+		while ((c = reader.read()) != -1) {
+			if (c == '%') {
+				clause.append((char) c);
+				readLineComment();
+			} else if (c == '/' && peek() == '*') {
+				clause.append((char) c);
+				readBlockComment();
+			} else if (c == '\'' || c == '"' || c == '`') {
+				clause.append((char) c);
+				readQuoted(c);
+			} else if (c == '0' && peek() == '\'') {
+				clause.append((char) c);
+				readCharLiteral();
+			} else if (Character.isLetterOrDigit(c) || c == '_') {
+				clause.append((char) c);
+				readAlphanumeric();
+			} else if (SYMBOL_CHARS.indexOf(c) != -1) {
+				reader.unread(c);
+				if (readSymbol()) {
+					return endClause();
+				}
+			} else {
+				clause.append((char) c);
+			}
+		}
+		String rest = clause.toString().trim();
+		if (rest.length() == 0) {
+			return null;
+		}
+		++clauseCount;
+		return rest;
+	}
+
+	/**
+	 * Returns the number of clauses read so far.
+	 * 
+	 * @return the number of clauses
+	 */
+	public long getClauseCount() {
+		return clauseCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	/**
+	 * Finishes the current clause.
+	 * 
+	 * @return the text of the clause
+	 */
+	private String endClause() {
+		++clauseCount;
+		return clause.toString();
+	}
+
+	/**
+	 * Skips the layout characters and comments before the next clause. The
+	 * text of the skipped comments is discarded by the caller.
+	 * 
+	 * @return <tt>false</tt> if the end of the text has been reached
+	 * @throws IOException if reading from the underlying reader fails
+	 */
+	private boolean skipLayout() throws IOException {
+		int c;
+		while ((c = reader.read()) != -1) {
+			if (c == '%') {
+				readLineComment();
+			} else if (c == '/' && peek() == '*') {
+				readBlockComment();
+			} else if (!Character.isWhitespace(c)) {
+				reader.unread(c);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the next character without consuming it.
+	 * 
+	 * @return the next character or -1 at the end of the text
+	 * @throws IOException if reading from the underlying reader fails
+	 */
+	private int peek() throws IOException {
+		int c = reader.read();
+		if (c != -1) {
+			reader.unread(c);
+		}
+		return c;
+	}
+
+	/**
+	 * Reads the rest of a line comment.
+	 * 
+	 * @throws IOException if reading from the underlying reader fails
+	 */
+	private void readLineComment() throws IOException {
+		int c;
+		while ((c = reader.read()) != -1) {
+			clause.append((char) c);
+			if (c == '\n') {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Reads the rest of a block comment. The opening slash has been read
+	 * already.
+	 * 
+	 * @throws IOException if reading from the underlying reader fails
+	 */
+	private void readBlockComment() throws IOException {
+		clause.append((char) reader.read());
+		int c;
+		int previous = 0;
+		while ((c = reader.read()) != -1) {
+			clause.append((char) c);
+			if (previous == '*' && c == '/') {
+				return;
+			}
+			previous = c;
+		}
+	}
+
+	/**
+	 * Reads the rest of a quoted atom or string. A doubled quote and a quote
+	 * escaped by a backslash do not close it.
+	 * 
+	 * @param quote the quote character that opened the atom or string
+	 * @throws IOException if reading from the underlying reader fails
+	 */
+	private void readQuoted(int quote) throws IOException {
+		int c;
+		while ((c = reader.read()) != -1) {
+			clause.append((char) c);
+			if (c == '\\') {
+				c = reader.read();
+				if (c == -1) {
+					return;
+				}
+				clause.append((char) c);
+			} else if (c == quote) {
+				if (peek() != quote) {
+					return;
+				}
+				clause.append((char) reader.read());
+			}
+		}
+	}
+
+	/**
+	 * Reads the rest of a character literal, e.g. <tt>0'a</tt>, 
+	 * <tt>0'\n</tt> or <tt>0''</tt>. The leading zero has been read already.
+	 * 
+	 * @throws IOException if reading from the underlying reader fails
+	 */
+	private void readCharLiteral() throws IOException {
+		clause.append((char) reader.read());
+		int c = reader.read();
+		if (c == -1) {
+			return;
+		}
+		clause.append((char) c);
+		if (c == '\\' || c == '\'' && peek() == '\'') {
+			c = reader.read();
+			if (c != -1) {
+				clause.append((char) c);
+			}
+		}
+	}
+
+	/**
+	 * Reads the rest of a name, a variable or an integer.
+	 * 
+	 * @throws IOException if reading from the underlying reader fails
+	 */
+	private void readAlphanumeric() throws IOException {
+		int c;
+		while ((c = reader.read()) != -1) {
+			if (Character.isLetterOrDigit(c) || c == '_') {
+				clause.append((char) c);
+			} else {
+				reader.unread(c);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Reads a sequence of symbol characters. If the sequence is a single full
+	 * stop followed by a layout character, a comment or the end of the text,
+	 * then it is an end token.
+	 * 
+	 * @return <tt>true</tt> if the sequence was an end token
+	 * @throws IOException if reading from the underlying reader fails
+	 */
+	private boolean readSymbol() throws IOException {
+		int length = 0;
+		boolean comment = false;
+		int c;
+		while ((c = reader.read()) != -1) {
+			if (SYMBOL_CHARS.indexOf(c) == -1) {
+				reader.unread(c);
+				break;
+			}
+			if (c == '/' && peek() == '*') {
+				reader.unread(c);
+				comment = true;
+				break;
+			}
+			clause.append((char) c);
+			++length;
+		}
+		if (length != 1 || clause.charAt(clause.length() - 1) != '.') {
+			return false;
+		}
+		return c == -1 || c == '%' || comment || Character.isWhitespace(c);
+	}
+
+}
@@ -24,10 +24,14 @@
 package org.prolog4j;
 
 //import java.lang.reflect.Array;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 //import java.util.StringTokenizer;
 
 /**
@@ -64,6 +68,13 @@ import java.util.Map;
  * to its superclasses and the implemented interfaces are looked for, 
  * recursively. If none found and there is no default way of conversion, then
  * an exception is thrown.
+ * <p>
+ * The converters selected for a class are cached in {@link ClassValue}s, so
+ * that the class hierarchy is walked only at the first conversion of an 
+ * instance of the class, and the caches do not prevent the classes from being
+ * unloaded. The caches are replaced when a new converter is registered. The
+ * registration and the filling of the caches are synchronized on the policy,
+ * the cached converters are read without locking.
  * 
  * @see Converter
  */
@@ -74,8 +85,7 @@ public abstract class ConversionPolicy {
 	 * of the map are the patterns. If a pattern matches a term then its 
 	 * converter can be applied.
 	 */
-	@SuppressWarnings("unchecked")
-	private HashMap<Object, Converter> termConverters;
+	private HashMap<Class<?>, Converter<Object>> termConverters;
 	
 	/**
 	 * Represents the reverse insertion order of the keys to 
@@ -91,17 +101,79 @@ public abstract class ConversionPolicy {
 	 * of the map are the patterns. If a pattern matches an object then its 
 	 * converter can be applied.
 	 */
-	@SuppressWarnings("unchecked")
-	private HashMap<Class, Converter> objectConverters;
+	private HashMap<Class<?>, Converter<Object>> objectConverters;
+
+	/**
+	 * Caches the term converters applicable to the terms of a class, in the 
+	 * order they have to be tried.
+	 */
+	private volatile ClassValue<List<Converter<Object>>> termConverterCache;
+
+	/**
+	 * Caches the object converter selected for the objects of a class. 
+	 * {@link #NO_CONVERTER} stands for classes without applicable converter.
+	 */
+	private volatile ClassValue<Converter<Object>> objectConverterCache;
+
+	/**
+	 * Placeholder in {@link #objectConverterCache} for classes that have no
+	 * applicable converter.
+	 */
+	private static final Converter<Object> NO_CONVERTER = new Converter<Object>() {
+		@Override
+		public Object convert(Object object) {
+			return null;
+		}
+	};
 	
+	/**
+	 * Set while an object is being converted on the thread and the conversion
+	 * is recorded by the flight recorder.
+	 */
+	private static final ThreadLocal<Boolean> CONVERTING = new ThreadLocal<Boolean>();
+
 	/**
 	 * Constructs an empty <code>ConversionPolicy</code>.
 	 */
-	@SuppressWarnings("unchecked")
 	protected ConversionPolicy() {
-		termConverters = new HashMap<Object, Converter>();
+		termConverters = new HashMap<Class<?>, Converter<Object>>();
 		termPatterns = new HashMap<String, Converter<Object>>();
-		objectConverters = new HashMap<Class, Converter>();
+		objectConverters = new HashMap<Class<?>, Converter<Object>>();
+		termConverterCache = new TermConverterCache();
+		objectConverterCache = new ObjectConverterCache();
+	}
+
+	/**
+	 * Caches the term converters applicable to the terms of a class.
+	 */
+	private final class TermConverterCache 
+			extends ClassValue<List<Converter<Object>>> {
+		@Override
+		protected List<Converter<Object>> computeValue(Class<?> termClass) {
+			List<Converter<Object>> converters = new ArrayList<Converter<Object>>();
+			synchronized (ConversionPolicy.this) {
+				for (Class<?> c = termClass; c != null; c = c.getSuperclass()) {
+					Converter<Object> converter = termConverters.get(c);
+					if (converter != null) {
+						converters.add(converter);
+					}
+				}
+			}
+			return converters;
+		}
+	}
+
+	/**
+	 * Caches the object converter selected for the objects of a class.
+	 */
+	private final class ObjectConverterCache 
+			extends ClassValue<Converter<Object>> {
+		@Override
+		protected Converter<Object> computeValue(Class<?> objectClass) {
+			synchronized (ConversionPolicy.this) {
+				return findObjectConverter(objectClass);
+			}
+		}
 	}
 	
 	/**
@@ -114,8 +186,13 @@ public abstract class ConversionPolicy {
 	 * @param class_ the object that represents the given type
 	 * @param converter the converter
 	 */
+	@SuppressWarnings("unchecked")
 	protected <T> void addTermConverter(Class<T> class_, Converter<T> converter) {
-		termConverters.put(class_, converter);
+		// The converter is applied only to the instances of the class.
+		synchronized (this) {
+			termConverters.put(class_, (Converter<Object>) converter);
+			termConverterCache = new TermConverterCache();
+		}
 	}
 	
 	/**
@@ -141,8 +218,13 @@ public abstract class ConversionPolicy {
 	 * @param class_ the object that represents the given type
 	 * @param converter the converter
 	 */
+	@SuppressWarnings("unchecked")
 	public <T> void addObjectConverter(Class<T> class_, Converter<T> converter) {
-		objectConverters.put(class_, converter);
+		// The converter is applied only to the instances of the class.
+		synchronized (this) {
+			objectConverters.put(class_, (Converter<Object>) converter);
+			objectConverterCache = new ObjectConverterCache();
+		}
 	}
 	
 	/**
@@ -162,13 +244,12 @@ public abstract class ConversionPolicy {
 	 * @param term the term to convert
 	 * @return the result of the conversion
 	 */
-	@SuppressWarnings("unchecked")
 	public Object convertTerm(Object term) {
 		if (term == null) {
 			return null;
 		}
 		if (isCompound(term)) {
-			Converter converter = termPatterns.get(getName(term));
+			Converter<Object> converter = termPatterns.get(getName(term));
 			if (converter != null) {
 				Object result = converter.convert(term);
 				if (result != null) {
@@ -176,17 +257,12 @@ public abstract class ConversionPolicy {
 				}
 			}
 		}
-		Class termClass = term.getClass();
-		do {
-			Converter converter = termConverters.get(termClass);
-			if (converter != null) {
-				Object result = converter.convert(term);
-				if (result != null) {
-					return result;
-				}
+		for (Converter<Object> converter: termConverterCache.get(term.getClass())) {
+			Object result = converter.convert(term);
+			if (result != null) {
+				return result;
 			}
-			termClass = termClass.getSuperclass();
-		} while (termClass != null);
+		}
 		throw new RuntimeException("No suitable converter found for " + term);
 	}
 
@@ -209,28 +285,17 @@ public abstract class ConversionPolicy {
 	 * @param type the type to convert to
 	 * @return the result of the conversion
 	 */
-	@SuppressWarnings("unchecked")
 	public <T> T convertTerm(Object term, Class<T> type) {
 		if (term == null) {
 			return null;
 		}
-		Class termClass = term.getClass();
-		do {
-			Converter converter = termConverters.get(termClass);
-			if (converter != null) {
-				return (T) converter.convert(term, type);
-			}
-//			for (Class interf: termClass.getInterfaces()) {
-//				converter = termConverters.get(interf);
-//				if (converter != null) {
-//					return converter.convert(term);
-//				}
-//			}
-			termClass = termClass.getSuperclass();
-		} while (termClass != null);
+		List<Converter<Object>> converters = termConverterCache.get(term.getClass());
+		if (!converters.isEmpty()) {
+			return converters.get(0).convert(term, type);
+		}
 		throw new RuntimeException("No suitable converter found for " + term);
 	}
-	
+
 	/**
 	 * Converts a regular Java object to a term. The <code>null</code> value
 	 * will be converted to <code>null</code> (that represents an unbound Prolog
@@ -249,41 +314,90 @@ public abstract class ConversionPolicy {
 	 * @param object the object to convert
 	 * @return the result of the conversion
 	 */
-	@SuppressWarnings("unchecked")
 	public Object convertObject(Object object) {
 		if (object == null) {
 			return null;
 		}
-		Class objectClass = object.getClass();
+		ConvertObjectEvent event = new ConvertObjectEvent();
+		if (!event.isEnabled() || CONVERTING.get() != null) {
+			return convert(object);
+		}
+		// The elements of lists and the arguments of compound terms are 
+		// converted by nested calls, they are not recorded separately.
+		CONVERTING.set(Boolean.TRUE);
+		Object term;
+		try {
+			event.begin();
+			term = convert(object);
+		} finally {
+			CONVERTING.remove();
+		}
+		if (event.shouldCommit()) {
+			event.javaType = object.getClass().getName();
+			event.binding = ProverFactory.bindingOf(this);
+			event.commit();
+		}
+		return term;
+	}
+
+	/**
+	 * Converts a regular Java object to a term by the converter selected for
+	 * its class.
+	 * 
+	 * @param object the object to convert, not <code>null</code>
+	 * @return the result of the conversion
+	 */
+	private Object convert(Object object) {
+		Converter<Object> converter = objectConverterCache.get(object.getClass());
+		if (converter == NO_CONVERTER) {
+			throw new RuntimeException("No suitable converter found for " + object);
+		}
+		return converter.convert(object);
+	}
+
+	/**
+	 * Looks for the object converter to use for the objects of the given 
+	 * class. For arrays, the converter of <tt>Object[]</tt> is used. For other
+	 * classes, the converter of the class is looked for at first, then the 
+	 * converters of the interfaces it implements, breadth-first, including 
+	 * the superinterfaces. If none found, the superclass is processed in the
+	 * same way.
+	 * 
+	 * @param objectClass the class of the object to convert
+	 * @return the converter, or {@link #NO_CONVERTER} if there is no 
+	 * 		applicable converter
+	 */
+	private Converter<Object> findObjectConverter(Class<?> objectClass) {
 		if (objectClass.isArray()) {
-			Converter converter = objectConverters.get(Object[].class);
-			return converter.convert(object);
-		} else {
-			do {
-				Converter converter = objectConverters.get(objectClass);
+			// TODO It does not handle interfaces and dimensions correctly.
+			Converter<Object> converter = objectConverters.get(Object[].class);
+			return converter != null ? converter : NO_CONVERTER;
+		}
+		Set<Class<?>> visited = new HashSet<Class<?>>();
+		for (Class<?> c = objectClass; c != null; c = c.getSuperclass()) {
+			Converter<Object> converter = objectConverters.get(c);
+			if (converter != null) {
+				return converter;
+			}
+			Queue<Class<?>> interfaces = new ArrayDeque<Class<?>>();
+			for (Class<?> interf: c.getInterfaces()) {
+				interfaces.add(interf);
+			}
+			while (!interfaces.isEmpty()) {
+				Class<?> interf = interfaces.remove();
+				if (!visited.add(interf)) {
+					continue;
+				}
+				converter = objectConverters.get(interf);
 				if (converter != null) {
-					return converter.convert(object);
+					return converter;
 				}
-				if (!objectClass.isArray()) {
-					for (Class interf: objectClass.getInterfaces()) {
-						converter = objectConverters.get(interf);
-						if (converter != null) {
-							return converter.convert(object);
-						}
-					}	
-					objectClass = objectClass.getSuperclass();
-				} else {
-					// TODO It does not handle interfaces and dimensions correctly.
-//					Class componentType = objectClass.getComponentType();
-//					componentType = componentType.getSuperclass();
-//					if (componentType == null) {
-//						break;
-//					}
-//					objectClass = Array.newInstance(componentType, new int[]{0}).getClass();
+				for (Class<?> superInterf: interf.getInterfaces()) {
+					interfaces.add(superInterf);
 				}
-			} while (objectClass != null);
+			}
 		}
-		throw new RuntimeException("No suitable converter found for " + object);
+		return NO_CONVERTER;
 	}
 
 	/**
@@ -342,8 +456,21 @@ public abstract class ConversionPolicy {
 	 */
 	public abstract Object term(int value);
 
-//	public abstract Object term(long value);
-//	public abstract Object term(float value);
+	/**
+	 * Creates a long integer term according to the actual implementation.
+	 * 
+	 * @param value the long value
+	 * @return the created Prolog integer term
+	 */
+	public abstract Object term(long value);
+
+	/**
+	 * Creates a real term according to the actual implementation.
+	 * 
+	 * @param value the float value
+	 * @return the created Prolog real term
+	 */
+	public abstract Object term(float value);
 
 	/**
 	 * Creates a real term according to the actual implementation.
@@ -353,6 +480,15 @@ public abstract class ConversionPolicy {
 	 */
 	public abstract Object term(double value);
 
+	/**
+	 * Creates the <tt>true</tt> or the <tt>false</tt> atom according to the
+	 * actual implementation.
+	 * 
+	 * @param value the boolean value
+	 * @return the created atom
+	 */
+	public abstract Object term(boolean value);
+
 	/**
 	 * Creates an atom according to the actual implementation.
 	 * 
@@ -442,7 +578,15 @@ public abstract class ConversionPolicy {
 	 * @return the int value of the term
 	 */
 	public abstract int intValue(Object term);
-//	public abstract long longValue(Object term);
+
+	/**
+	 * Converts an integer term to a long value.
+	 * 
+	 * @param term a term representing an integer value
+	 * @return the long value of the term
+	 */
+	public abstract long longValue(Object term);
+
 //	public abstract float floatValue(Object term);
 	/**
 	 * Converts a floating point term to a double value.
@@ -0,0 +1,89 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.time.Duration;
+
+/**
+ * This exception is thrown when the resolution of a goal is aborted because
+ * it has exceeded its time limit or its inference limit.
+ * 
+ * @see Query#withTimeout(Duration)
+ * @see Prover#setTimeout(Duration)
+ * @see Prover#setMaxInferences(long)
+ */
+public class LimitExceededException extends RuntimeException {
+
+	/** Class version for serialization. */
+	private static final long serialVersionUID = 1L;
+
+	/** The goal whose resolution has been aborted. */
+	private final String goal;
+
+	/**
+	 * Constructs a LimitExceededException. It takes as its arguments the goal
+	 * whose resolution has been aborted and the description of the limit that
+	 * has been exceeded.
+	 * 
+	 * @param goal the aborted goal
+	 * @param limit the description of the exceeded limit
+	 */
+	public LimitExceededException(String goal, String limit) {
+		super(String.format("The following goal has exceeded the %s: \"%s\".", 
+				limit, goal));
+		this.goal = goal;
+	}
+
+	/**
+	 * Constructs a LimitExceededException for a goal that has exceeded its
+	 * time limit.
+	 * 
+	 * @param goal the aborted goal
+	 * @param timeout the time limit of the goal
+	 */
+	public LimitExceededException(String goal, Duration timeout) {
+		this(goal, "time limit of " + timeout.toMillis() + " ms");
+	}
+
+	/**
+	 * Constructs a LimitExceededException for a goal that has exceeded its
+	 * inference limit.
+	 * 
+	 * @param goal the aborted goal
+	 * @param maxInferences the inference limit of the goal
+	 */
+	public LimitExceededException(String goal, long maxInferences) {
+		this(goal, "limit of " + maxInferences + " inferences");
+	}
+
+	/**
+	 * Returns the goal whose resolution has been aborted.
+	 * 
+	 * @return the aborted goal
+	 */
+	public String getGoal() {
+		return goal;
+	}
+
+}
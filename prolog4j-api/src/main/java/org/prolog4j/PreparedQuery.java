@@ -0,0 +1,339 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Represents a Prolog query that is parsed once and can be solved many times,
+ * even concurrently. It is supposed to be created by 
+ * {@link Prover#prepare(String)}.
+ * <p>
+ * Unlike {@link Query}, a prepared query is immutable. Its arguments cannot be
+ * bound in advance, all of them have to be passed to the <tt>solve</tt> 
+ * methods. Every invocation builds a fresh goal from the parsed template, so
+ * the invocations do not interfere with each other.
+ * <p>
+ * Note that the provers themselves are not thread-safe. To solve a prepared
+ * query concurrently, each thread has to use its own prover, e.g. one borrowed
+ * from a {@link ProverPool}, and pass it to {@link #solve(Prover, Object...)}.
+ * The prover must be of the same implementation as the prover that has 
+ * prepared the query.
+ * <p>
+ * A batch of argument tuples can also be spread over the provers of a pool by
+ * {@link #solveAll(ProverPool, List, Executor)} and 
+ * {@link #solveBatch(ProverPool, List, String, Executor)}.
+ */
+public abstract class PreparedQuery extends Query implements Cloneable {
+
+	/** The prover that has prepared the query. */
+	private final Prover prover;
+
+	/**
+	 * Creates a prepared query object.
+	 * 
+	 * @param prover the prover that prepares the query
+	 * @param goalPattern the Prolog goal
+	 */
+	protected PreparedQuery(final Prover prover, final String goalPattern) {
+		super(goalPattern);
+		this.prover = prover;
+	}
+
+	/**
+	 * Solves the Prolog goal by the prover that has prepared the query. The 
+	 * actual arguments will be bound to the placeholders before solving the
+	 * goal.
+	 * 
+	 * @param <A>
+	 *            the type of an element of the solutions
+	 * @param actualArgs
+	 *            the actual arguments of the goal
+	 * @return an object for traversing the solutions
+	 */
+	@Override
+	public final <A> Solution<A> solve(Object... actualArgs) {
+		return this.<A> solve(prover, actualArgs);
+	}
+
+	/**
+	 * Solves the Prolog goal by the given prover. The actual arguments will be
+	 * bound to the placeholders before solving the goal.
+	 * 
+	 * @param <A>
+	 *            the type of an element of the solutions
+	 * @param prover
+	 *            the prover that solves the goal
+	 * @param actualArgs
+	 *            the actual arguments of the goal
+	 * @return an object for traversing the solutions
+	 */
+	public abstract <A> Solution<A> solve(Prover prover, Object... actualArgs);
+
+	/**
+	 * Returns a copy of the query with the given time limit. The query itself
+	 * is not changed, since it may be shared by several threads. The copy 
+	 * shares the parsed goal with the query.
+	 * 
+	 * @param timeout the time limit, or <tt>null</tt> to remove the limit
+	 * @return a copy of this query with the time limit
+	 * @see Query#withTimeout(Duration)
+	 */
+	@Override
+	public PreparedQuery withTimeout(Duration timeout) {
+		PreparedQuery copy;
+		try {
+			copy = (PreparedQuery) clone();
+		} catch (CloneNotSupportedException e) {
+			throw new AssertionError(e);
+		}
+		copy.setTimeout(timeout);
+		return copy;
+	}
+
+	/**
+	 * Halts the prover that has prepared the query.
+	 */
+	@Override
+	protected void halt() {
+		if (prover instanceof AbstractProver) {
+			((AbstractProver) prover).halt();
+		}
+	}
+
+	/**
+	 * Solves the Prolog goal by the given prover for each of the given 
+	 * argument tuples.
+	 * 
+	 * @param prover
+	 *            the prover that solves the goal
+	 * @param tuples
+	 *            the actual arguments of the goal, one array for each 
+	 *            invocation
+	 * @return a bit set whose <i>i</i>th bit is set if the goal has a 
+	 *         solution for the <i>i</i>th tuple
+	 * @see #solveAll(Iterable)
+	 */
+	public BitSet solveAll(final Prover prover, Iterable<Object[]> tuples) {
+		return Query.solveAll(tuple -> solve(prover, tuple), tuples);
+	}
+
+	/**
+	 * Solves the Prolog goal by the given prover for each of the given 
+	 * argument tuples and collects the value of the given variable in the 
+	 * first solution of each.
+	 * 
+	 * @param <A>
+	 *            the type of the values of the variable
+	 * @param prover
+	 *            the prover that solves the goal
+	 * @param tuples
+	 *            the actual arguments of the goal, one array for each 
+	 *            invocation
+	 * @param variable
+	 *            the name of the variable whose values are collected
+	 * @return the values of the variable, in the order of the tuples; 
+	 *         <code>null</code> for the tuples without solution
+	 * @see #solveBatch(Iterable, String)
+	 */
+	public <A> List<A> solveBatch(final Prover prover, Iterable<Object[]> tuples, 
+			String variable) {
+		return Query.<A> solveBatch(tuple -> this.<A> solve(prover, tuple), 
+				tuples, variable);
+	}
+
+	/**
+	 * Solves the Prolog goal for each of the given argument tuples, spreading
+	 * them over the provers of the pool. The tuples are split into as many 
+	 * contiguous slices as many provers the pool has, and each slice is solved
+	 * by a task submitted to the executor, using a prover borrowed from the 
+	 * pool. The method returns when all the slices have been solved.
+	 * 
+	 * @param pool
+	 *            the provers that solve the goal
+	 * @param tuples
+	 *            the actual arguments of the goal, one array for each 
+	 *            invocation
+	 * @param executor
+	 *            runs the tasks solving the slices
+	 * @return a bit set whose <i>i</i>th bit is set if the goal has a 
+	 *         solution for the <i>i</i>th tuple
+	 * @throws InterruptedException if interrupted while waiting for the tasks
+	 */
+	public BitSet solveAll(ProverPool pool, List<Object[]> tuples, 
+			Executor executor) throws InterruptedException {
+		final BitSet result = new BitSet(tuples.size());
+		fanOut(pool, tuples, executor, new Slice() {
+			@Override
+			void solve(Prover prover, List<Object[]> slice, int offset) {
+				BitSet bits = solveAll(prover, slice);
+				synchronized (result) {
+					for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+						result.set(offset + i);
+					}
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Solves the Prolog goal for each of the given argument tuples, spreading
+	 * them over the provers of the pool, and collects the value of the given 
+	 * variable in the first solution of each. The tuples are distributed as 
+	 * by {@link #solveAll(ProverPool, List, Executor)}.
+	 * 
+	 * @param <A>
+	 *            the type of the values of the variable
+	 * @param pool
+	 *            the provers that solve the goal
+	 * @param tuples
+	 *            the actual arguments of the goal, one array for each 
+	 *            invocation
+	 * @param variable
+	 *            the name of the variable whose values are collected
+	 * @param executor
+	 *            runs the tasks solving the slices
+	 * @return the values of the variable, in the order of the tuples; 
+	 *         <code>null</code> for the tuples without solution
+	 * @throws InterruptedException if interrupted while waiting for the tasks
+	 */
+	@SuppressWarnings("unchecked")
+	public <A> List<A> solveBatch(ProverPool pool, List<Object[]> tuples, 
+			final String variable, Executor executor) throws InterruptedException {
+		final Object[] result = new Object[tuples.size()];
+		fanOut(pool, tuples, executor, new Slice() {
+			@Override
+			void solve(Prover prover, List<Object[]> slice, int offset) {
+				List<Object> values = solveBatch(prover, slice, variable);
+				for (int i = 0; i < values.size(); ++i) {
+					result[offset + i] = values.get(i);
+				}
+			}
+		});
+		return (List<A>) Arrays.asList(result);
+	}
+
+	/**
+	 * Solves a contiguous slice of a batch of argument tuples.
+	 */
+	private abstract static class Slice {
+
+		/**
+		 * Solves the tuples of the slice and stores the results.
+		 * 
+		 * @param prover the prover borrowed for the slice
+		 * @param slice the tuples of the slice
+		 * @param offset the index of the first tuple of the slice in the batch
+		 */
+		abstract void solve(Prover prover, List<Object[]> slice, int offset);
+
+	}
+
+	/**
+	 * Splits the tuples into slices and solves each by a task submitted to the
+	 * executor, using a prover borrowed from the pool. Waits for all the tasks
+	 * to complete. If a task fails, its exception is rethrown.
+	 * 
+	 * @param pool the provers that solve the goal
+	 * @param tuples the actual arguments of the goal
+	 * @param executor runs the tasks
+	 * @param solver solves the slices
+	 * @throws InterruptedException if interrupted while waiting for the tasks
+	 */
+	private static void fanOut(final ProverPool pool, List<Object[]> tuples, 
+			Executor executor, final Slice solver) throws InterruptedException {
+		int size = tuples.size();
+		int sliceNo = Math.min(pool.getSize(), size);
+		if (sliceNo == 0) {
+			return;
+		}
+		int sliceSize = (size + sliceNo - 1) / sliceNo;
+		final CountDownLatch done = new CountDownLatch((size + sliceSize - 1) / sliceSize);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		for (int from = 0; from < size; from += sliceSize) {
+			final int offset = from;
+			final List<Object[]> slice = tuples.subList(from, Math.min(from + sliceSize, size));
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Prover prover = pool.acquire();
+						try {
+							solver.solve(prover, slice, offset);
+						} finally {
+							pool.release(prover);
+						}
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+					} finally {
+						done.countDown();
+					}
+				}
+			});
+		}
+		done.await();
+		Throwable e = failure.get();
+		if (e instanceof RuntimeException) {
+			throw (RuntimeException) e;
+		} else if (e instanceof Error) {
+			throw (Error) e;
+		} else if (e != null) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Prepared queries are immutable, so this operation is not supported.
+	 * 
+	 * @param argument the number of the argument of the goal
+	 * @param value the value to be bound to the argument
+	 * @return nothing
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public final Query bind(int argument, Object value) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Prepared queries are immutable, so this operation is not supported.
+	 * 
+	 * @param variable the name of the variable of the goal
+	 * @param value the value to be bound to the variable
+	 * @return nothing
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public final Query bind(String variable, Object value) {
+		throw new UnsupportedOperationException();
+	}
+
+}
@@ -25,6 +25,10 @@ package org.prolog4j;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * A Prover object represents a Prolog knowledge base, on which you can create
@@ -59,6 +63,132 @@ public interface Prover {
 	 */
 	Query query(String goal);
 
+	/**
+	 * Creates a Prolog query that is parsed only once and can be solved many
+	 * times, even by several threads at the same time.
+	 * 
+	 * @param goal
+	 *            the Prolog goal
+	 * @return an immutable query object to be solved later
+	 * @see PreparedQuery
+	 */
+	PreparedQuery prepare(String goal);
+
+	/**
+	 * Solves a Prolog goal asynchronously, on the worker thread of the 
+	 * prover. The returned future is completed when the first solution has
+	 * been found (or it turned out that there is none). Cancelling the future
+	 * halts the engine if the goal is being solved and the implementation 
+	 * supports halting.
+	 * <p>
+	 * The engines bound to a thread (e.g. SWI-Prolog) require the further
+	 * solutions to be fetched on the worker thread as well:
+	 * <pre>
+	 * p.solveAsync("mortal(X).")
+	 *         .thenApplyAsync(Solution::toList, p.getExecutor());
+	 * </pre>
+	 * 
+	 * @param <A>
+	 *            the type of an element of the solutions
+	 * @param goal
+	 *            the Prolog goal
+	 * @param actualArgs
+	 *            the actual arguments of the goal
+	 * @return a future of the object for traversing the solutions
+	 * @see Query#solveAsync(java.util.concurrent.Executor, Object...)
+	 */
+	<A> CompletableFuture<Solution<A>> solveAsync(String goal, Object... actualArgs);
+
+	/**
+	 * Returns the executor that runs the goals solved by 
+	 * {@link #solveAsync(String, Object...)}. It runs its tasks one by one, on
+	 * a single worker thread of the prover. The thread is kept until 
+	 * {@link #shutdown()} is called or the prover is garbage collected, so
+	 * the solutions of the prover are always fetched on the same thread.
+	 * 
+	 * @return the executor of the prover
+	 */
+	Executor getExecutor();
+
+	/**
+	 * Stops the worker thread of the prover after the tasks already submitted
+	 * to its executor have been run. A later call of 
+	 * {@link #solveAsync(String, Object...)} or {@link #getExecutor()} starts 
+	 * a new worker thread.
+	 */
+	void shutdown();
+
+	/**
+	 * Creates a query whose answers are memoized for each tuple of actual 
+	 * arguments. The answers are discarded when the given predicates are
+	 * changed through the prover. If no predicates are given, then any change
+	 * of the knowledge base discards them.
+	 * <pre>
+	 * CachedQuery q = p.cached("ancestor(?X, Y).", "parent/2");
+	 * List&lt;String&gt; ancestors = q.&lt;String&gt;solve("bob").toList();
+	 * </pre>
+	 * 
+	 * @param goal the Prolog goal
+	 * @param predicates the predicates the answers depend on, by their name
+	 *        or name and arity
+	 * @return the cached query
+	 * @see CachedQuery
+	 */
+	CachedQuery cached(String goal, String... predicates);
+
+	/**
+	 * Registers a listener to be notified of the events of solving goals by
+	 * the prover.
+	 * 
+	 * @param listener the listener to register
+	 * @see ProverMetrics
+	 */
+	void addListener(ProverListener listener);
+
+	/**
+	 * Unregisters a listener.
+	 * 
+	 * @param listener the listener to unregister
+	 */
+	void removeListener(ProverListener listener);
+
+	/**
+	 * Sets the time limit of finding a solution of the goals solved by the
+	 * prover. It applies to the queries that have no time limit of their own
+	 * (see {@link Query#withTimeout(Duration)}). If the limit is exceeded, the
+	 * engine is halted and a {@link LimitExceededException} is thrown.
+	 * 
+	 * @param timeout the time limit, or <tt>null</tt> to remove the limit
+	 */
+	void setTimeout(Duration timeout);
+
+	/**
+	 * Returns the time limit of finding a solution of the goals solved by the
+	 * prover.
+	 * 
+	 * @return the time limit, or <tt>null</tt> if it is not set
+	 */
+	Duration getTimeout();
+
+	/**
+	 * Sets the maximal number of inferences that the engine may perform while
+	 * finding a solution of a goal. If the limit is exceeded, the resolution
+	 * is aborted and a {@link LimitExceededException} is thrown.
+	 * 
+	 * @param maxInferences the inference limit, or zero to remove the limit
+	 * @throws UnsupportedOperationException if the engine cannot count its
+	 *         inferences
+	 */
+	void setMaxInferences(long maxInferences);
+
+	/**
+	 * Returns the maximal number of inferences that the engine may perform 
+	 * while finding a solution of a goal.
+	 * 
+	 * @return the inference limit, or zero if it is not set
+	 */
+	long getMaxInferences();
+
 	/**
 	 * Loads in a Prolog library of the specified name.
 	 * 
@@ -75,6 +205,28 @@ public interface Prover {
 	 */
 	void loadTheory(InputStream input) throws IOException;
 
+	/**
+	 * Loads a Prolog theory from a file. The file is read and added to the
+	 * knowledge base clause by clause, so its text is never held in the 
+	 * memory as a whole. The file is expected to be UTF-8 encoded.
+	 * 
+	 * @param file the file to load
+	 * @throws IOException if reading the file fails
+	 */
+	void loadTheory(Path file) throws IOException;
+
+	/**
+	 * Loads a Prolog theory from a file, reporting the progress to the given
+	 * listener. The file is read and added to the knowledge base clause by
+	 * clause, so its text is never held in the memory as a whole. The file is
+	 * expected to be UTF-8 encoded.
+	 * 
+	 * @param file the file to load
+	 * @param listener the listener to report the progress to
+	 * @throws IOException if reading the file fails
+	 */
+	void loadTheory(Path file, TheoryLoadListener listener) throws IOException;
+
 	/**
 	 * Adds a Prolog theory to the knowledge base.
 	 * 
@@ -100,6 +252,32 @@ public interface Prover {
 	 */
 	void assertz(String fact, Object... args);
 
+	/**
+	 * Asserts Prolog facts to the knowledge base. The facts are converted to
+	 * terms by the conversion policy of the prover, so no Prolog text is 
+	 * parsed.
+	 * 
+	 * @param facts the facts to assert
+	 */
+	void assertz(Compound... facts);
+
+	/**
+	 * Asserts a Prolog fact to the knowledge base for each row. The functor 
+	 * of the facts is the given one, their arguments are the elements of the
+	 * row, converted to terms by the conversion policy of the prover. No 
+	 * Prolog text is parsed, so this is the preferred way of loading a large
+	 * number of facts, e.g. from a database:
+	 * <pre>
+	 * p.assertAll("capital", Arrays.asList(
+	 *         new Object[]{"hungary", "budapest"},
+	 *         new Object[]{"austria", "vienna"}));
+	 * </pre>
+	 * 
+	 * @param functor the functor of the facts
+	 * @param rows the arguments of the facts, one array for each fact
+	 */
+	void assertAll(String functor, Iterable<Object[]> rows);
+
 	/**
 	 * Retracts a Prolog fact or rule from the knowledge base.
 	 * 
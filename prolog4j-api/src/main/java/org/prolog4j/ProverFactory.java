@@ -74,10 +74,18 @@ public final class ProverFactory {
 	}
 
 	/**
-	 * The state of the initialization of the ProverFactory instance.
+	 * The state of the initialization of the ProverFactory instance. It is
+	 * guarded by the lock of the class.
 	 */
 	private static InitializationState initState = InitializationState.UNINITIALIZED;
 
+	/**
+	 * The IProverFactory instance, published when the initialization has 
+	 * finished successfully. Reading it does not need locking, so looking up
+	 * the factory does not contend once it has been initialized.
+	 */
+	private static volatile IProverFactory proverFactory;
+
 	/**
 	 * It is our responsibility to track version changes and manage the
 	 * compatibility list.
@@ -100,7 +108,8 @@ public final class ProverFactory {
 	 * <p>
 	 * You are strongly discouraged from calling this method in production code.
 	 */
-	static void reset() {
+	static synchronized void reset() {
+		proverFactory = null;
 		initState = InitializationState.UNINITIALIZED;
 	}
 
@@ -256,6 +265,21 @@ public final class ProverFactory {
 		return getIProverFactory().createConversionPolicy();
 	}
 	
+	/**
+	 * Returns the name of the binding that a prover, a query, a solution or a
+	 * conversion policy belongs to. It is the package of its implementation 
+	 * class, e.g. <tt>org.prolog4j.jlog</tt>, so it tells the engines apart 
+	 * even if more than one is loaded.
+	 * 
+	 * @param component an object implemented by a binding
+	 * @return the name of the binding
+	 */
+	static String bindingOf(Object component) {
+		String className = component.getClass().getName();
+		int dot = className.lastIndexOf('.');
+		return dot == -1 ? "" : className.substring(0, dot);
+	}
+
 	/**
 	 * Returns the {@link IProverFactory} instance in use.
 	 * <p>
@@ -264,13 +288,29 @@ public final class ProverFactory {
 	 * @return the IProverFactory instance in use
 	 */
 	private static IProverFactory getIProverFactory() {
+		IProverFactory factory = proverFactory;
+		if (factory != null) {
+			return factory;
+		}
+		return initialize();
+	}
+
+	/**
+	 * Initializes the factory if it has not been initialized yet, and returns
+	 * the {@link IProverFactory} instance. The threads that request the
+	 * factory during the initialization wait for it to finish.
+	 * 
+	 * @return the IProverFactory instance in use
+	 */
+	private static synchronized IProverFactory initialize() {
 		if (initState == InitializationState.UNINITIALIZED) {
 			initState = InitializationState.ONGOING;
 			performInitialization();
 		}
 		switch (initState) {
 		case SUCCESSFUL:
-			return getSingleton().getProverFactory();
+			proverFactory = getSingleton().getProverFactory();
+			return proverFactory;
 		case FAILED:
 			throw new IllegalStateException(UNSUCCESSFUL_INIT_MSG);
 		case ONGOING:
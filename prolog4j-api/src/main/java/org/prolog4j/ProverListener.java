@@ -0,0 +1,100 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+/**
+ * Receives the events of solving goals by a prover. It is registered by
+ * {@link Prover#addListener(ProverListener)}. The events are reported with the
+ * goal as passed to the query (i.e. with the placeholders, not with the actual
+ * arguments), so they can be aggregated by goal template. The times are 
+ * measured in nanoseconds.
+ * <p>
+ * The methods are called on the thread that uses the prover, synchronously,
+ * so they should return quickly. A listener registered to several provers 
+ * has to be thread-safe. All the methods do nothing by default.
+ * 
+ * @see ProverMetrics
+ */
+public interface ProverListener {
+
+	/**
+	 * Called when a query has been created and its goal has been parsed.
+	 * 
+	 * @param goal the goal of the query
+	 * @param nanos the time of parsing the goal
+	 */
+	default void onParse(String goal, long nanos) {
+	}
+
+	/**
+	 * Called when the engine starts solving a goal.
+	 * 
+	 * @param goal the goal of the query
+	 */
+	default void onSolveStart(String goal) {
+	}
+
+	/**
+	 * Called when the engine has found the first solution of a goal, or it 
+	 * turned out that the goal has no solution.
+	 * 
+	 * @param goal the goal of the query
+	 * @param success whether the goal has a solution
+	 * @param nanos the time of finding the first solution
+	 */
+	default void onSolution(String goal, boolean success, long nanos) {
+	}
+
+	/**
+	 * Called when the engine has found a further solution of a goal, or it
+	 * turned out that there are no more solutions.
+	 * 
+	 * @param goal the goal of the query
+	 * @param found whether another solution has been found
+	 * @param nanos the time of finding the solution
+	 */
+	default void onFetch(String goal, boolean found, long nanos) {
+	}
+
+	/**
+	 * Called when a term bound by a solution has been converted to a Java
+	 * object.
+	 * 
+	 * @param goal the goal of the query
+	 * @param nanos the time of the conversion
+	 */
+	default void onConvert(String goal, long nanos) {
+	}
+
+	/**
+	 * Called when the solutions of a goal have been closed, either 
+	 * explicitly or because the last solution has been fetched.
+	 * 
+	 * @param goal the goal of the query
+	 * @param solutions the number of solutions found
+	 */
+	default void onClose(String goal, int solutions) {
+	}
+
+}
@@ -0,0 +1,446 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects statistics of the solved goals, by goal template. It is a 
+ * {@link ProverListener} that can be registered to any number of provers:
+ * <pre>
+ * ProverMetrics metrics = new ProverMetrics();
+ * p.addListener(metrics);
+ * ...
+ * ProverMetrics.GoalMetrics m = metrics.getGoalMetrics("mortal(X).");
+ * long p99 = m.getLatencyPercentile(0.99);
+ * </pre>
+ * The counters are updated without locking, so the collector adds little
+ * overhead to the provers. Statistics are kept for a limited number of goal
+ * templates, so that goals built by concatenation (including the goals of 
+ * <tt>assertz</tt> and <tt>retract</tt>) do not exhaust the memory. The 
+ * goals beyond the limit are counted together in the 
+ * {@link #getOverflowMetrics() overflow statistics}. The latencies are recorded in a histogram whose
+ * buckets are powers of two nanoseconds, so the percentiles are 
+ * approximated within a factor of two.
+ */
+public class ProverMetrics implements ProverListener {
+
+	/** The default maximal number of goal templates tracked one by one. */
+	public static final int DEFAULT_MAX_GOALS = 1000;
+
+	/** The goal of the overflow statistics. */
+	public static final String OVERFLOW_GOAL = "<other goals>";
+
+	/** The statistics by goal template. */
+	private final ConcurrentMap<String, GoalMetrics> goals = 
+		new ConcurrentHashMap<String, GoalMetrics>();
+
+	/** The statistics of the goals that are not tracked one by one. */
+	private volatile GoalMetrics overflow = new GoalMetrics(OVERFLOW_GOAL);
+
+	/** The maximal number of goal templates tracked one by one. */
+	private final int maxGoals;
+
+	/**
+	 * Creates a collector that tracks at most {@link #DEFAULT_MAX_GOALS} goal
+	 * templates one by one.
+	 */
+	public ProverMetrics() {
+		this(DEFAULT_MAX_GOALS);
+	}
+
+	/**
+	 * Creates a collector.
+	 * 
+	 * @param maxGoals the maximal number of goal templates tracked one by 
+	 *        one; the limit may be exceeded by a few goals that are first
+	 *        solved concurrently
+	 */
+	public ProverMetrics(int maxGoals) {
+		if (maxGoals < 0) {
+			throw new IllegalArgumentException("Negative number of goals: " + maxGoals);
+		}
+		this.maxGoals = maxGoals;
+	}
+
+	/**
+	 * Returns the statistics of a goal template, creating them if needed. If
+	 * the maximal number of goal templates is reached, the overflow 
+	 * statistics are returned for a new goal.
+	 * 
+	 * @param goal the goal template
+	 * @return the statistics of the goal
+	 */
+	private GoalMetrics metrics(String goal) {
+		GoalMetrics metrics = goals.get(goal);
+		if (metrics == null) {
+			if (goals.size() >= maxGoals) {
+				return overflow;
+			}
+			metrics = goals.computeIfAbsent(goal, GoalMetrics::new);
+		}
+		return metrics;
+	}
+
+	@Override
+	public void onParse(String goal, long nanos) {
+		GoalMetrics m = metrics(goal);
+		m.parses.increment();
+		m.parseNanos.add(nanos);
+	}
+
+	@Override
+	public void onSolveStart(String goal) {
+		metrics(goal).queries.increment();
+	}
+
+	@Override
+	public void onSolution(String goal, boolean success, long nanos) {
+		GoalMetrics m = metrics(goal);
+		if (success) {
+			m.successes.increment();
+		}
+		m.latencies.incrementAndGet(GoalMetrics.bucket(nanos));
+	}
+
+	@Override
+	public void onFetch(String goal, boolean found, long nanos) {
+		GoalMetrics m = metrics(goal);
+		m.fetches.increment();
+		m.fetchNanos.add(nanos);
+	}
+
+	@Override
+	public void onConvert(String goal, long nanos) {
+		GoalMetrics m = metrics(goal);
+		m.conversions.increment();
+		m.convertNanos.add(nanos);
+	}
+
+	@Override
+	public void onClose(String goal, int solutions) {
+		GoalMetrics m = metrics(goal);
+		m.closes.increment();
+		m.solutions.add(solutions);
+		m.maxSolutions.accumulate(solutions);
+	}
+
+	/**
+	 * Returns the goal templates for which statistics have been collected.
+	 * 
+	 * @return the goal templates
+	 */
+	public Set<String> getGoals() {
+		return Collections.unmodifiableSet(goals.keySet());
+	}
+
+	/**
+	 * Returns the statistics of a goal template.
+	 * 
+	 * @param goal the goal template
+	 * @return the statistics of the goal, or <tt>null</tt> if the goal has not
+	 *         been solved
+	 */
+	public GoalMetrics getGoalMetrics(String goal) {
+		return goals.get(goal);
+	}
+
+	/**
+	 * Returns the statistics of the goals that were first solved after the 
+	 * maximal number of goal templates had been reached. 
+	 * 
+	 * @return the statistics of the goals not tracked one by one
+	 */
+	public GoalMetrics getOverflowMetrics() {
+		return overflow;
+	}
+
+	/**
+	 * Discards the statistics collected so far.
+	 */
+	public void reset() {
+		goals.clear();
+		overflow = new GoalMetrics(OVERFLOW_GOAL);
+	}
+
+	/**
+	 * Returns the statistics in a human readable form, one line for each 
+	 * goal template.
+	 * 
+	 * @return the statistics
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (GoalMetrics m: goals.values()) {
+			sb.append(m).append('\n');
+		}
+		GoalMetrics other = overflow;
+		if (other.getQueryCount() > 0 || other.getParseCount() > 0) {
+			sb.append(other).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * The statistics of a goal template.
+	 */
+	public static final class GoalMetrics {
+
+		/** The number of buckets of the latency histogram. */
+		private static final int BUCKETS = 64;
+
+		/** The goal template. */
+		private final String goal;
+
+		/** The number of queries created. */
+		private final LongAdder parses = new LongAdder();
+
+		/** The total time of parsing the goal. */
+		private final LongAdder parseNanos = new LongAdder();
+
+		/** The number of times the goal has been solved. */
+		private final LongAdder queries = new LongAdder();
+
+		/** The number of times the goal has had a solution. */
+		private final LongAdder successes = new LongAdder();
+
+		/** The histogram of the times of finding the first solution. */
+		private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+
+		/** The number of further solutions requested. */
+		private final LongAdder fetches = new LongAdder();
+
+		/** The total time of finding the further solutions. */
+		private final LongAdder fetchNanos = new LongAdder();
+
+		/** The number of terms converted. */
+		private final LongAdder conversions = new LongAdder();
+
+		/** The total time of converting terms. */
+		private final LongAdder convertNanos = new LongAdder();
+
+		/** The number of solutions closed. */
+		private final LongAdder closes = new LongAdder();
+
+		/** The total number of solutions found by the closed solutions. */
+		private final LongAdder solutions = new LongAdder();
+
+		/** The maximal number of solutions found by a closed solution. */
+		private final LongAccumulator maxSolutions = new LongAccumulator(Math::max, 0L);
+
+		/**
+		 * Creates the statistics of a goal template.
+		 * 
+		 * @param goal the goal template
+		 */
+		GoalMetrics(String goal) {
+			this.goal = goal;
+		}
+
+		/**
+		 * Returns the bucket of the latency histogram for a time. Bucket 
+		 * <i>i</i> holds the times less than 2<sup><i>i</i></sup> 
+		 * nanoseconds and not less than the half of it.
+		 * 
+		 * @param nanos the time in nanoseconds
+		 * @return the index of the bucket
+		 */
+		static int bucket(long nanos) {
+			return nanos <= 0L ? 0 : Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1);
+		}
+
+		/**
+		 * Returns the goal template.
+		 * 
+		 * @return the goal template
+		 */
+		public String getGoal() {
+			return goal;
+		}
+
+		/**
+		 * Returns the number of queries created for the goal, i.e. the number
+		 * of times it has been parsed.
+		 * 
+		 * @return the number of queries
+		 */
+		public long getParseCount() {
+			return parses.sum();
+		}
+
+		/**
+		 * Returns the total time of parsing the goal.
+		 * 
+		 * @return the time in nanoseconds
+		 */
+		public long getParseNanos() {
+			return parseNanos.sum();
+		}
+
+		/**
+		 * Returns the number of times the goal has been solved.
+		 * 
+		 * @return the number of times the goal has been solved
+		 */
+		public long getQueryCount() {
+			return queries.sum();
+		}
+
+		/**
+		 * Returns the number of times the goal has had a solution.
+		 * 
+		 * @return the number of successful queries
+		 */
+		public long getSuccessCount() {
+			return successes.sum();
+		}
+
+		/**
+		 * Returns the histogram of the times of finding the first solution.
+		 * Element <i>i</i> is the number of times that were less than 
+		 * 2<sup><i>i</i></sup> nanoseconds and not less than the half of it.
+		 * 
+		 * @return the histogram
+		 */
+		public long[] getLatencyHistogram() {
+			long[] histogram = new long[BUCKETS];
+			for (int i = 0; i < BUCKETS; ++i) {
+				histogram[i] = latencies.get(i);
+			}
+			return histogram;
+		}
+
+		/**
+		 * Returns an upper bound of the given percentile of the times of
+		 * finding the first solution. It is at most twice the exact value.
+		 * 
+		 * @param percentile the percentile, between 0 and 1
+		 * @return the upper bound in nanoseconds, or zero if the goal has not
+		 *         been solved
+		 */
+		public long getLatencyPercentile(double percentile) {
+			long[] histogram = getLatencyHistogram();
+			long total = 0L;
+			for (long count: histogram) {
+				total += count;
+			}
+			if (total == 0L) {
+				return 0L;
+			}
+			long rank = (long) Math.ceil(percentile * total);
+			long seen = 0L;
+			for (int i = 0; i < BUCKETS; ++i) {
+				seen += histogram[i];
+				if (seen >= rank && histogram[i] > 0) {
+					return i == BUCKETS - 1 ? Long.MAX_VALUE : 1L << i;
+				}
+			}
+			return Long.MAX_VALUE;
+		}
+
+		/**
+		 * Returns the number of further solutions requested.
+		 * 
+		 * @return the number of requests
+		 */
+		public long getFetchCount() {
+			return fetches.sum();
+		}
+
+		/**
+		 * Returns the total time of finding the further solutions.
+		 * 
+		 * @return the time in nanoseconds
+		 */
+		public long getFetchNanos() {
+			return fetchNanos.sum();
+		}
+
+		/**
+		 * Returns the number of terms converted to Java objects.
+		 * 
+		 * @return the number of conversions
+		 */
+		public long getConversionCount() {
+			return conversions.sum();
+		}
+
+		/**
+		 * Returns the total time of converting terms to Java objects.
+		 * 
+		 * @return the time in nanoseconds
+		 */
+		public long getConversionNanos() {
+			return convertNanos.sum();
+		}
+
+		/**
+		 * Returns the number of solutions closed.
+		 * 
+		 * @return the number of solutions closed
+		 */
+		public long getCloseCount() {
+			return closes.sum();
+		}
+
+		/**
+		 * Returns the average number of solutions found by a query. Only the
+		 * closed solutions are taken into account.
+		 * 
+		 * @return the average number of solutions
+		 */
+		public double getSolutionsPerQuery() {
+			long closed = closes.sum();
+			return closed == 0L ? 0.0 : (double) solutions.sum() / closed;
+		}
+
+		/**
+		 * Returns the maximal number of solutions found by a query. Only the
+		 * closed solutions are taken into account.
+		 * 
+		 * @return the maximal number of solutions
+		 */
+		public long getMaxSolutionsPerQuery() {
+			return maxSolutions.get();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: queries=%d, successes=%d, p50=%dns, p99=%dns, "
+					+ "fetches=%d, solutions/query=%.2f, conversions=%d (%dns)", 
+					goal, getQueryCount(), getSuccessCount(), 
+					getLatencyPercentile(0.5), getLatencyPercentile(0.99),
+					getFetchCount(), getSolutionsPerQuery(), 
+					getConversionCount(), getConversionNanos());
+		}
+	}
+
+}
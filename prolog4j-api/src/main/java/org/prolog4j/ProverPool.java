@@ -0,0 +1,168 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed size pool of provers that have the same knowledge base. The provers
+ * are not thread-safe, so a prover must not be used by several threads at a
+ * time. Instead, each thread borrows a prover from the pool for the time of a
+ * request and gives it back afterwards:
+ * <pre>
+ * Prover p = pool.acquire();
+ * try {
+ *     p.solve("mortal(?).", "socrates");
+ * } finally {
+ *     pool.release(p);
+ * }
+ * </pre>
+ * The provers are created and the theory is loaded into them when the pool is
+ * constructed. Note that changes to the knowledge base of a borrowed prover
+ * (e.g. by {@link Prover#assertz(String, Object...)}) are not propagated to
+ * the other provers of the pool.
+ */
+public class ProverPool {
+
+	/** The provers that belong to the pool. */
+	private final Set<Prover> provers;
+
+	/** The provers that are currently not borrowed. */
+	private final BlockingQueue<Prover> idleProvers;
+
+	/** The provers that are currently borrowed. */
+	private final Set<Prover> lentProvers = 
+		Collections.newSetFromMap(new ConcurrentHashMap<Prover, Boolean>());
+
+	/**
+	 * Creates a pool of provers using the statically bound 
+	 * {@link IProverFactory} instance.
+	 * 
+	 * @param size the number of provers in the pool
+	 * @param theory the theory to load into each prover
+	 * @see ProverFactory#getProver()
+	 */
+	public ProverPool(int size, String... theory) {
+		this(null, size, theory);
+	}
+
+	/**
+	 * Creates a pool of provers using the given factory.
+	 * 
+	 * @param factory the factory creating the provers
+	 * @param size the number of provers in the pool
+	 * @param theory the theory to load into each prover
+	 */
+	public ProverPool(IProverFactory factory, int size, String... theory) {
+		if (size < 1) {
+			throw new IllegalArgumentException("The size of the pool must be positive.");
+		}
+		provers = Collections.newSetFromMap(new IdentityHashMap<Prover, Boolean>(size));
+		idleProvers = new LinkedBlockingQueue<Prover>(size);
+		for (int i = 0; i < size; ++i) {
+			Prover prover = factory == null 
+					? ProverFactory.getProver() 
+					: factory.getProver();
+			if (theory.length > 0) {
+				prover.addTheory(theory);
+			}
+			provers.add(prover);
+			idleProvers.add(prover);
+		}
+	}
+
+	/**
+	 * Borrows a prover from the pool. If all the provers are in use, it waits
+	 * until one of them is released.
+	 * 
+	 * @return a prover of the pool
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Prover acquire() throws InterruptedException {
+		Prover prover = idleProvers.take();
+		lentProvers.add(prover);
+		return prover;
+	}
+
+	/**
+	 * Borrows a prover from the pool. If all the provers are in use, it waits
+	 * up to the specified time until one of them is released.
+	 * 
+	 * @param timeout how long to wait before giving up
+	 * @param unit the unit of the <tt>timeout</tt> argument
+	 * @return a prover of the pool or <code>null</code> if the specified time
+	 *         elapsed before a prover became available
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Prover acquire(long timeout, TimeUnit unit) throws InterruptedException {
+		Prover prover = idleProvers.poll(timeout, unit);
+		if (prover != null) {
+			lentProvers.add(prover);
+		}
+		return prover;
+	}
+
+	/**
+	 * Gives back a borrowed prover to the pool. The prover must not be used
+	 * by the caller after this.
+	 * 
+	 * @param prover the prover borrowed from this pool
+	 * @throws IllegalArgumentException if the prover does not belong to the pool
+	 * @throws IllegalStateException if the prover has not been borrowed
+	 */
+	public void release(Prover prover) {
+		if (!provers.contains(prover)) {
+			throw new IllegalArgumentException("The prover does not belong to this pool.");
+		}
+		if (!lentProvers.remove(prover)) {
+			throw new IllegalStateException("The prover has already been released.");
+		}
+		idleProvers.offer(prover);
+	}
+
+	/**
+	 * Returns the number of provers in the pool.
+	 * 
+	 * @return the size of the pool
+	 */
+	public int getSize() {
+		return provers.size();
+	}
+
+	/**
+	 * Returns the number of provers that are currently not borrowed.
+	 * 
+	 * @return the number of available provers
+	 */
+	public int getAvailable() {
+		return idleProvers.size();
+	}
+
+}
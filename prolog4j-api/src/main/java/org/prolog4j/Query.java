@@ -24,8 +24,15 @@
 package org.prolog4j;
 
 //import java.lang.ref.Reference;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Represents a Prolog query. It is supposed to be created by 
@@ -35,10 +42,22 @@ public abstract class Query {
 
 	/** The Prolog goal to be solved. */
 	private final String goal;
+
+	/** The goal as passed to the constructor, with the placeholders. */
+	private final String goalPattern;
 	
 	/** The name of the named placeholders of the goal. */
 	private final ArrayList<String> placeholderNames;
 
+	/** The time limit of the resolution, or <tt>null</tt> if not limited. */
+	private volatile Duration timeout;
+
+	/** 
+	 * The flight recorder event of creating the query, or <tt>null</tt> if
+	 * it is not recorded or it has already been committed.
+	 */
+	private ParseEvent parseEvent;
+
 //	/**
 //	 * Weak references to the objects referred by the query.
 //	 */
@@ -50,6 +69,12 @@ public abstract class Query {
 	 * @param goalPattern the Prolog goal
 	 */
 	protected Query(final String goalPattern) {
+		ParseEvent event = new ParseEvent();
+		if (event.isEnabled()) {
+			event.begin();
+			parseEvent = event;
+		}
+		this.goalPattern = goalPattern;
 		placeholderNames = new ArrayList<String>();
 		StringBuilder goalB = new StringBuilder(goalPattern);
 		String newVarPrefix = null;
@@ -95,6 +120,17 @@ public abstract class Query {
 		return goal;
 	}
 
+	/**
+	 * Returns the goal as passed to the constructor, with the placeholders. 
+	 * The events reported to the {@link ProverListener listeners} refer to
+	 * the goal by it.
+	 * 
+	 * @return the original goal
+	 */
+	final String getGoalPattern() {
+		return goalPattern;
+	}
+
 	/**
 	 * Returns a list with the name of the place holders in the query.
 	 * @return the placeholderNames
@@ -103,6 +139,55 @@ public abstract class Query {
 		return placeholderNames;
 	}
 
+	/**
+	 * Commits the flight recorder event of creating the query, if it is 
+	 * being recorded. It is called when the query has been created.
+	 */
+	final void parsed() {
+		ParseEvent event = parseEvent;
+		if (event != null) {
+			parseEvent = null;
+			if (event.shouldCommit()) {
+				event.goal = goal;
+				event.binding = ProverFactory.bindingOf(this);
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Limits the time that the engine may spend on finding a solution of the
+	 * query. The limit applies to the first and to each further solution 
+	 * separately. If the limit is exceeded, the engine is halted and a
+	 * {@link LimitExceededException} is thrown. If no limit is set, then the
+	 * {@link Prover#getTimeout() time limit of the prover} applies.
+	 * 
+	 * @param timeout the time limit, or <tt>null</tt> to remove the limit
+	 * @return this query
+	 */
+	public Query withTimeout(Duration timeout) {
+		setTimeout(timeout);
+		return this;
+	}
+
+	/**
+	 * Sets the time limit of the query.
+	 * 
+	 * @param timeout the time limit, or <tt>null</tt> to remove the limit
+	 */
+	final void setTimeout(Duration timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Returns the time limit of the query.
+	 * 
+	 * @return the time limit, or <tt>null</tt> if it is not set
+	 */
+	protected final Duration getTimeout() {
+		return timeout;
+	}
+
 //	/**
 //	 * Returns a list with the place holders in the query.
 //	 * 
@@ -143,6 +228,182 @@ public abstract class Query {
 	 */
 	public abstract <A> Solution<A> solve(Object... actualArgs);
 
+	/**
+	 * Solves the Prolog goal by the given executor. The returned future is
+	 * completed when the first solution has been found (or it turned out that
+	 * there is none). Cancelling the future halts the engine if the goal is
+	 * being solved and the implementation supports halting.
+	 * <p>
+	 * The further solutions are fetched by the thread that traverses the 
+	 * solution. The engines bound to a thread (e.g. SWI-Prolog) require it to
+	 * be the thread that solved the goal, e.g.:
+	 * <pre>
+	 * q.solveAsync(executor).thenApplyAsync(Solution::toList, executor);
+	 * </pre>
+	 * where <tt>executor</tt> runs its tasks on a single thread.
+	 * 
+	 * @param <A>
+	 *            the type of an element of the solutions
+	 * @param executor
+	 *            the executor that solves the goal
+	 * @param actualArgs
+	 *            the actual arguments of the goal
+	 * @return a future of the object for traversing the solutions
+	 */
+	public <A> CompletableFuture<Solution<A>> solveAsync(Executor executor, 
+			final Object... actualArgs) {
+		return submit(executor, new Supplier<Solution<A>>() {
+			@Override
+			public Solution<A> get() {
+				return Query.this.<A> solve(actualArgs);
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				halt();
+			}
+		});
+	}
+
+	/**
+	 * Stops the resolution of the goal if it is running. It is called when
+	 * the future returned by {@link #solveAsync(Executor, Object...)} is 
+	 * cancelled. By default it does nothing, the implementations whose engine
+	 * can be halted override it.
+	 */
+	protected void halt() {
+	}
+
+	/**
+	 * Solves a goal by the given executor.
+	 * 
+	 * @param <A> the type of an element of the solutions
+	 * @param executor the executor that solves the goal
+	 * @param task solves the goal
+	 * @param halt halts the engine
+	 * @return a future of the object for traversing the solutions
+	 * @see #solveAsync(Executor, Object...)
+	 */
+	static <A> CompletableFuture<Solution<A>> submit(Executor executor, 
+			final Supplier<Solution<A>> task, final Runnable halt) {
+		final AtomicBoolean running = new AtomicBoolean();
+		final CompletableFuture<Solution<A>> future = new CompletableFuture<Solution<A>>() {
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				boolean cancelled = super.cancel(mayInterruptIfRunning);
+				if (cancelled && running.get()) {
+					halt.run();
+				}
+				return cancelled;
+			}
+		};
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				// A cancellation before running is set does not halt the 
+				// engine, so it is checked again after.
+				running.set(true);
+				if (future.isDone()) {
+					running.set(false);
+					return;
+				}
+				try {
+					Solution<A> solution = task.get();
+					if (!future.complete(solution)) {
+						solution.close();
+					}
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				} finally {
+					running.set(false);
+				}
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Solves the Prolog goal for each of the given argument tuples. The goal
+	 * is parsed only once, and the solutions are closed as soon as their 
+	 * success is known, so that the engine does not keep alternatives for 
+	 * them.
+	 * 
+	 * @param tuples
+	 *            the actual arguments of the goal, one array for each 
+	 *            invocation
+	 * @return a bit set whose <i>i</i>th bit is set if the goal has a 
+	 *         solution for the <i>i</i>th tuple
+	 */
+	public BitSet solveAll(Iterable<Object[]> tuples) {
+		return solveAll(this::solve, tuples);
+	}
+
+	/**
+	 * Solves a goal for each of the given argument tuples.
+	 * 
+	 * @param solver solves the goal for an argument tuple
+	 * @param tuples the actual arguments of the goal
+	 * @return a bit set whose <i>i</i>th bit is set if the goal has a 
+	 *         solution for the <i>i</i>th tuple
+	 * @see #solveAll(Iterable)
+	 */
+	static BitSet solveAll(Function<Object[], Solution<?>> solver, 
+			Iterable<Object[]> tuples) {
+		BitSet result = new BitSet();
+		int i = 0;
+		for (Object[] tuple: tuples) {
+			Solution<?> solution = solver.apply(tuple);
+			if (solution.isSuccess()) {
+				result.set(i);
+			}
+			solution.close();
+			++i;
+		}
+		return result;
+	}
+
+	/**
+	 * Solves the Prolog goal for each of the given argument tuples and 
+	 * collects the value of the given variable in the first solution of each.
+	 * The goal is parsed only once, and the solutions are closed after their
+	 * first value has been read.
+	 * 
+	 * @param <A>
+	 *            the type of the values of the variable
+	 * @param tuples
+	 *            the actual arguments of the goal, one array for each 
+	 *            invocation
+	 * @param variable
+	 *            the name of the variable whose values are collected
+	 * @return the values of the variable, in the order of the tuples; 
+	 *         <code>null</code> for the tuples without solution
+	 */
+	public <A> List<A> solveBatch(Iterable<Object[]> tuples, String variable) {
+		return solveBatch(this::solve, tuples, variable);
+	}
+
+	/**
+	 * Solves a goal for each of the given argument tuples and collects the 
+	 * value of the given variable in the first solution of each.
+	 * 
+	 * @param <A> the type of the values of the variable
+	 * @param solver solves the goal for an argument tuple
+	 * @param tuples the actual arguments of the goal
+	 * @param variable the name of the variable whose values are collected
+	 * @return the values of the variable, in the order of the tuples
+	 * @see #solveBatch(Iterable, String)
+	 */
+	static <A> List<A> solveBatch(Function<Object[], Solution<A>> solver, 
+			Iterable<Object[]> tuples, String variable) {
+		List<A> result = new ArrayList<A>();
+		for (Object[] tuple: tuples) {
+			Solution<A> solution = solver.apply(tuple);
+			result.add(solution.isSuccess() ? solution.<A>get(variable) : null);
+			solution.close();
+		}
+		return result;
+	}
+
 	/**
 	 * Binds a value to the specified argument of the goal. The argument is 
 	 * specified by its position. Numbering starts from zero.
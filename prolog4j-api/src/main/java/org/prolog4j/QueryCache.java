@@ -0,0 +1,244 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of prepared queries, keyed by the text of their goal. When
+ * the cache is full, the least recently used query is evicted. Lookups do not
+ * lock, so the order of the recent uses is only approximate.
+ * <p>
+ * By default every prover has its own cache for the goals solved by
+ * {@link Prover#solve(String, Object...)}. Its size can be set by the
+ * <tt>org.prolog4j.queryCacheSize</tt> system property, or later by 
+ * {@link #setMaxSize(int)}.
+ * <p>
+ * Prepared queries are immutable, and they can be solved by any prover of the
+ * same implementation, so a cache can also be shared by the provers, e.g. the
+ * provers of a {@link ProverPool}. The {@link #getSharedCache() shared cache}
+ * is used by the provers that opt in by 
+ * {@link AbstractProver#setQueryCache(QueryCache)}. Note that a cached query 
+ * refers to the prover that has prepared it, so that prover cannot be 
+ * garbage collected until the query is evicted, and the parsing of a goal is
+ * only reported to the listeners of that prover.
+ * <p>
+ * The methods of the class are thread-safe.
+ */
+public class QueryCache {
+
+	/** The default maximal number of cached queries. */
+	public static final int DEFAULT_MAX_SIZE = 256;
+
+	/** 
+	 * The maximal number of cached queries of the caches created by 
+	 * {@link #QueryCache()}. 
+	 */
+	private static final int CONFIGURED_MAX_SIZE = 
+			Integer.getInteger("org.prolog4j.queryCacheSize", DEFAULT_MAX_SIZE);
+
+	/** The cache that can be shared by the provers. */
+	private static final QueryCache SHARED_CACHE = new QueryCache();
+
+	/** The cached queries by their goal. */
+	private final Map<String, Entry> queries = 
+			new ConcurrentHashMap<String, Entry>();
+
+	/** The clock of the accesses, for finding the least recently used query. */
+	private final AtomicLong clock = new AtomicLong();
+
+	/** The maximal number of cached queries. */
+	private volatile int maxSize;
+
+	/** The number of lookups that found the query in the cache. */
+	private final LongAdder hitCount = new LongAdder();
+
+	/** The number of lookups that had to prepare the query. */
+	private final LongAdder missCount = new LongAdder();
+
+	/**
+	 * A cached query and the time of its last use.
+	 */
+	private static final class Entry {
+
+		/** The prepared query. */
+		final PreparedQuery query;
+
+		/** The value of the clock when the query was last used. */
+		volatile long lastUse;
+
+		/**
+		 * Creates an entry.
+		 * 
+		 * @param query the prepared query
+		 * @param lastUse the value of the clock
+		 */
+		Entry(PreparedQuery query, long lastUse) {
+			this.query = query;
+			this.lastUse = lastUse;
+		}
+	}
+
+	/**
+	 * Creates a cache of the size given by the 
+	 * <tt>org.prolog4j.queryCacheSize</tt> system property, or of 
+	 * {@link #DEFAULT_MAX_SIZE} if it is not set.
+	 */
+	public QueryCache() {
+		this(CONFIGURED_MAX_SIZE);
+	}
+
+	/**
+	 * Creates a cache.
+	 * 
+	 * @param maxSize the maximal number of cached queries; zero disables 
+	 *        caching
+	 */
+	public QueryCache(int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Negative cache size: " + maxSize);
+		}
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the cache that can be shared by the provers.
+	 * 
+	 * @return the shared cache
+	 */
+	public static QueryCache getSharedCache() {
+		return SHARED_CACHE;
+	}
+
+	/**
+	 * Returns the prepared query for the goal. If it is not cached, then it is
+	 * prepared by the given prover and put into the cache.
+	 * 
+	 * @param prover the prover that prepares the query if it is not cached
+	 * @param goal the Prolog goal
+	 * @return the prepared query
+	 */
+	public PreparedQuery get(Prover prover, String goal) {
+		Entry entry = queries.get(goal);
+		if (entry != null) {
+			hitCount.increment();
+			entry.lastUse = clock.incrementAndGet();
+			return entry.query;
+		}
+		missCount.increment();
+		PreparedQuery query = prover.prepare(goal);
+		if (maxSize > 0) {
+			queries.put(goal, new Entry(query, clock.incrementAndGet()));
+			if (queries.size() > maxSize) {
+				evict();
+			}
+		}
+		return query;
+	}
+
+	/**
+	 * Evicts the least recently used queries while there are more queries in
+	 * the cache than its maximal size.
+	 */
+	private synchronized void evict() {
+		while (queries.size() > maxSize) {
+			String eldest = null;
+			long eldestUse = Long.MAX_VALUE;
+			for (Map.Entry<String, Entry> e: queries.entrySet()) {
+				if (e.getValue().lastUse < eldestUse) {
+					eldest = e.getKey();
+					eldestUse = e.getValue().lastUse;
+				}
+			}
+			if (eldest == null) {
+				return;
+			}
+			queries.remove(eldest);
+		}
+	}
+
+	/**
+	 * Returns the number of cached queries.
+	 * 
+	 * @return the number of cached queries
+	 */
+	public int size() {
+		return queries.size();
+	}
+
+	/**
+	 * Returns the maximal number of cached queries.
+	 * 
+	 * @return the maximal number of cached queries
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Sets the maximal number of cached queries. If there are more queries in
+	 * the cache, the least recently used ones are evicted.
+	 * 
+	 * @param maxSize the maximal number of cached queries; zero disables 
+	 *        caching
+	 */
+	public void setMaxSize(int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Negative cache size: " + maxSize);
+		}
+		this.maxSize = maxSize;
+		evict();
+	}
+
+	/**
+	 * Returns the number of lookups that found the query in the cache.
+	 * 
+	 * @return the number of hits
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that had to prepare the query.
+	 * 
+	 * @return the number of misses
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	/**
+	 * Removes all the queries from the cache and resets the counters.
+	 */
+	public void clear() {
+		queries.clear();
+		hitCount.reset();
+		missCount.reset();
+	}
+
+}
@@ -23,20 +23,36 @@
  */
 package org.prolog4j;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Represents the solutions of a query.
+ * <p>
+ * The engine keeps the alternatives of the query open until the last solution
+ * has been fetched. If the traversal is abandoned earlier, the solution should
+ * be closed so that the engine can release them:
+ * <pre>
+ * try (Solution&lt;String&gt; s = p.solve("mortal(X).")) {
+ *     first = s.get();
+ * }
+ * </pre>
  *
  * @param <S> The type of the values of the variable that is of special
  *            interest
  */
-public abstract class Solution<S> implements Iterable<S> {
+public abstract class Solution<S> implements Iterable<S>, AutoCloseable {
 
 	/**
 	 * The name of the variable that is of special interest.
@@ -48,7 +64,167 @@ public abstract class Solution<S> implements Iterable<S> {
 	 * converted to this type.
 	 */
 	protected Class<S> clazz;
-	
+
+	/** The query whose solutions are traversed, or <tt>null</tt>. */
+	private final Query query;
+
+	/** The listener to notify of the events, or <tt>null</tt>. */
+	private final ProverListener listener;
+
+	/** The time when the search for the first solution started. */
+	private long solveStart;
+
+	/** The number of solutions found so far. */
+	private int solutionCount;
+
+	/** True if the closing of the solutions has been reported. */
+	private boolean closeReported;
+
+	/** 
+	 * The state of the traversal by {@link #nextSolution()}: 0 before the
+	 * first solution, 1 at a solution, 2 after the last one. 
+	 */
+	private int cursor;
+
+	/** 
+	 * The names of the variables, indexed by their slots, if the slots are
+	 * not mapped by the implementation. 
+	 */
+	private List<String> slotNames;
+
+	/** 
+	 * The flight recorder event of finding the first solution, or 
+	 * <tt>null</tt> if it is not recorded.
+	 */
+	private SolveEvent solveEvent;
+
+	/**
+	 * Creates a solution that is not bound to a query, so it is not 
+	 * instrumented.
+	 */
+	protected Solution() {
+		this(null, null);
+	}
+
+	/**
+	 * Creates a solution of a query. If the prover has listeners, they are
+	 * notified that the engine starts solving the query, so the constructor of
+	 * the subclass has to call {@link #solved(boolean)} when the first 
+	 * solution has been found. The same applies to the flight recorder.
+	 * 
+	 * @param prover the prover that solves the query
+	 * @param query the query to solve
+	 */
+	protected Solution(Prover prover, Query query) {
+		this.query = query;
+		this.listener = query != null && prover instanceof AbstractProver 
+				? ((AbstractProver) prover).getListener() : null;
+		if (listener != null) {
+			listener.onSolveStart(query.getGoalPattern());
+			solveStart = System.nanoTime();
+		}
+		SolveEvent event = new SolveEvent();
+		if (query != null && event.isEnabled()) {
+			event.begin();
+			solveEvent = event;
+		}
+	}
+
+	/**
+	 * Returns the goal of the query.
+	 * 
+	 * @return the goal, or <tt>null</tt> if the solution is not bound to a
+	 *         query
+	 */
+	private String goal() {
+		return query != null ? query.getGoal() : null;
+	}
+
+	/**
+	 * Returns the time limit of finding a solution of the query.
+	 * 
+	 * @return the time limit, or <tt>null</tt> if the query has no time limit
+	 * @see Query#withTimeout(Duration)
+	 */
+	protected final Duration getTimeout() {
+		return query != null ? query.getTimeout() : null;
+	}
+
+	/**
+	 * Reports to the listeners and to the flight recorder that the first 
+	 * solution has been found, or it turned out that there is none.
+	 * 
+	 * @param success whether the query has a solution
+	 */
+	protected final void solved(boolean success) {
+		SolveEvent event = solveEvent;
+		if (event != null) {
+			solveEvent = null;
+			if (event.shouldCommit()) {
+				event.goal = query.getGoal();
+				event.binding = ProverFactory.bindingOf(this);
+				event.success = success;
+				event.commit();
+			}
+		}
+		if (listener != null) {
+			if (success) {
+				solutionCount = 1;
+			}
+			listener.onSolution(query.getGoalPattern(), success, 
+					System.nanoTime() - solveStart);
+		}
+	}
+
+	/**
+	 * Converts the term bound to a variable by the given conversion policy,
+	 * and reports the conversion to the listeners and to the flight recorder.
+	 * 
+	 * @param <A> the type of the converted value
+	 * @param policy the conversion policy to use
+	 * @param variable the name of the variable
+	 * @param term the term bound to the variable
+	 * @param type the type to convert to, or <tt>null</tt> if the type is
+	 *        decided by the conversion policy
+	 * @return the converted value
+	 */
+	@SuppressWarnings("unchecked")
+	protected final <A> A convert(ConversionPolicy policy, String variable, 
+			Object term, Class<A> type) {
+		ConvertTermEvent event = new ConvertTermEvent();
+		if (event.isEnabled()) {
+			event.begin();
+		} else {
+			event = null;
+		}
+		long start = listener == null ? 0L : System.nanoTime();
+		Object value = type == null 
+				? policy.convertTerm(term) : policy.convertTerm(term, type);
+		if (listener != null) {
+			listener.onConvert(query.getGoalPattern(), System.nanoTime() - start);
+		}
+		if (event != null && event.shouldCommit()) {
+			event.goal = goal();
+			event.binding = ProverFactory.bindingOf(this);
+			event.variable = variable;
+			event.javaType = value != null ? value.getClass().getName() : null;
+			event.commit();
+		}
+		return (A) value;
+	}
+
+	/**
+	 * Reports to the listeners that the solutions have been closed. It is
+	 * reported only once, so it can be called by each invocation of 
+	 * {@link #close()}.
+	 */
+	protected final void closed() {
+		if (listener != null && !closeReported) {
+			closeReported = true;
+			listener.onClose(query.getGoalPattern(), solutionCount);
+		}
+	}
+
 	/**
 	 * Returns whether there exists a solution or not. Does not depend on the
 	 * state of the traversal, only one solution should exist.
@@ -148,7 +324,179 @@ public abstract class Solution<S> implements Iterable<S> {
 	 * @return the value bound to the variable
 	 */
 	public abstract <A> A get(String variable, Class<A> type);
+
+	/**
+	 * Returns the value of the variable last occurring in the goal bound to by
+	 * the first solution of the goal, as an <tt>int</tt>.
+	 * 
+	 * @return the value of the last variable occurring in the goal
+	 * @see #getInt(String)
+	 */
+	public int getInt() {
+		return getInt(defaultOutputVariable);
+	}
+
+	/**
+	 * Returns the value of the variable last occurring in the goal bound to by
+	 * the first solution of the goal, as a <tt>long</tt>.
+	 * 
+	 * @return the value of the last variable occurring in the goal
+	 * @see #getLong(String)
+	 */
+	public long getLong() {
+		return getLong(defaultOutputVariable);
+	}
+
+	/**
+	 * Returns the value of the variable last occurring in the goal bound to by
+	 * the first solution of the goal, as a <tt>double</tt>.
+	 * 
+	 * @return the value of the last variable occurring in the goal
+	 * @see #getDouble(String)
+	 */
+	public double getDouble() {
+		return getDouble(defaultOutputVariable);
+	}
+
+	/**
+	 * Returns the value of the given variable bound to by the first solution of
+	 * the goal, as an <tt>int</tt>. The variable must be bound to a number.
+	 * <p>
+	 * The implementations read the value directly from the term, so no 
+	 * wrapper object is created. (The default implementation converts the 
+	 * term to a <tt>Number</tt>, at first.)
+	 * 
+	 * @param variable the name of the variable
+	 * @return the value bound to the variable
+	 */
+	public int getInt(String variable) {
+		return get(variable, Number.class).intValue();
+	}
+
+	/**
+	 * Returns the value of the given variable bound to by the first solution of
+	 * the goal, as a <tt>long</tt>. The variable must be bound to a number.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the value bound to the variable
+	 * @see #getInt(String)
+	 */
+	public long getLong(String variable) {
+		return get(variable, Number.class).longValue();
+	}
+
+	/**
+	 * Returns the value of the given variable bound to by the first solution of
+	 * the goal, as a <tt>double</tt>. The variable must be bound to a number.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the value bound to the variable
+	 * @see #getInt(String)
+	 */
+	public double getDouble(String variable) {
+		return get(variable, Number.class).doubleValue();
+	}
 	
+	/**
+	 * Returns the names of the variables of the goal whose values can be 
+	 * read from the solutions, as reported by the engine. It is empty if the
+	 * goal has no solution.
+	 * 
+	 * @return the names of the variables
+	 */
+	public abstract List<String> getVariables();
+
+	/**
+	 * Returns the slot of the given variable. The value of the variable can
+	 * be read from each solution traversed by this object by 
+	 * {@link #get(int)} and the like, without looking up the variable by 
+	 * name. It is worth resolving the slots once when several variables are
+	 * read from many solutions:
+	 * <pre>
+	 * int x = solution.slotOf("X"), y = solution.slotOf("Y");
+	 * while (solution.nextSolution()) {
+	 *     points.add(new Point(solution.getInt(x), solution.getInt(y)));
+	 * }
+	 * </pre>
+	 * The implementations map the slots to the variables of the engine. The
+	 * default implementation maps them to the names of the variables.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the slot of the variable
+	 */
+	public int slotOf(String variable) {
+		if (slotNames == null) {
+			slotNames = new ArrayList<String>();
+		}
+		int slot = slotNames.indexOf(variable);
+		if (slot == -1) {
+			slot = slotNames.size();
+			slotNames.add(variable);
+		}
+		return slot;
+	}
+
+	/**
+	 * Returns the value of the variable of the given slot bound to by the 
+	 * current solution.
+	 * 
+	 * @param <A> the type of the value
+	 * @param slot the slot of the variable, returned by {@link #slotOf(String)}
+	 * @return the value bound to the variable
+	 */
+	public <A> A get(int slot) {
+		return this.<A> get(slotNames.get(slot));
+	}
+
+	/**
+	 * Returns the value of the variable of the given slot bound to by the
+	 * current solution, converted to the given type.
+	 * 
+	 * @param <A> the type of the value
+	 * @param slot the slot of the variable, returned by {@link #slotOf(String)}
+	 * @param type the type which the value should be converted to
+	 * @return the value bound to the variable
+	 */
+	public <A> A get(int slot, Class<A> type) {
+		return get(slotNames.get(slot), type);
+	}
+
+	/**
+	 * Returns the value of the variable of the given slot bound to by the
+	 * current solution, as an <tt>int</tt>. The variable must be bound to a 
+	 * number.
+	 * 
+	 * @param slot the slot of the variable, returned by {@link #slotOf(String)}
+	 * @return the value bound to the variable
+	 */
+	public int getInt(int slot) {
+		return getInt(slotNames.get(slot));
+	}
+
+	/**
+	 * Returns the value of the variable of the given slot bound to by the
+	 * current solution, as a <tt>long</tt>. The variable must be bound to a 
+	 * number.
+	 * 
+	 * @param slot the slot of the variable, returned by {@link #slotOf(String)}
+	 * @return the value bound to the variable
+	 */
+	public long getLong(int slot) {
+		return getLong(slotNames.get(slot));
+	}
+
+	/**
+	 * Returns the value of the variable of the given slot bound to by the
+	 * current solution, as a <tt>double</tt>. The variable must be bound to a 
+	 * number.
+	 * 
+	 * @param slot the slot of the variable, returned by {@link #slotOf(String)}
+	 * @return the value bound to the variable
+	 */
+	public double getDouble(int slot) {
+		return getDouble(slotNames.get(slot));
+	}
+
 	/**
 	 * Fetches the next solution if there is one.
 	 * 
@@ -156,6 +504,37 @@ public abstract class Solution<S> implements Iterable<S> {
 	 * 		<code>false</code>
 	 */
 	protected abstract boolean fetch();
+
+	/**
+	 * Fetches the next solution and reports it to the listeners and to the
+	 * flight recorder.
+	 * 
+	 * @return <code>true</code> if there was another solution, otherwise
+	 * 		<code>false</code>
+	 */
+	private boolean fetchNext() {
+		FetchEvent event = new FetchEvent();
+		if (event.isEnabled()) {
+			event.begin();
+		} else {
+			event = null;
+		}
+		long start = listener == null ? 0L : System.nanoTime();
+		boolean found = fetch();
+		if (listener != null) {
+			if (found) {
+				++solutionCount;
+			}
+			listener.onFetch(query.getGoalPattern(), found, System.nanoTime() - start);
+		}
+		if (event != null && event.shouldCommit()) {
+			event.goal = goal();
+			event.binding = ProverFactory.bindingOf(this);
+			event.found = found;
+			event.commit();
+		}
+		return found;
+	}
 	
 	@Override
 	public SolutionIterator<S> iterator() {
@@ -165,12 +544,21 @@ public abstract class Solution<S> implements Iterable<S> {
 			
 			/** Stores whether there is another solution or not. */
 			private boolean hasNext = isSuccess();
+
+			{
+				if (!hasNext) {
+					close();
+				}
+			}
 			
 			@Override
 			public boolean hasNext() {
 				if (!fetched) {
-					hasNext = fetch();
+					hasNext = fetchNext();
 					fetched = true;
+					if (!hasNext) {
+						close();
+					}
 				}
 				return hasNext;
 			}
@@ -203,9 +591,155 @@ public abstract class Solution<S> implements Iterable<S> {
 				return Solution.this.get(variable, type);
 			}
 
+			@Override
+			public int getInt(String variable) {
+				return Solution.this.getInt(variable);
+			}
+
+			@Override
+			public long getLong(String variable) {
+				return Solution.this.getLong(variable);
+			}
+
+			@Override
+			public double getDouble(String variable) {
+				return Solution.this.getDouble(variable);
+			}
+
+			@Override
+			public int slotOf(String variable) {
+				return Solution.this.slotOf(variable);
+			}
+
+			@Override
+			public <A> A get(int slot) {
+				return Solution.this.<A>get(slot);
+			}
+
+			@Override
+			public <A> A get(int slot, Class<A> type) {
+				return Solution.this.get(slot, type);
+			}
+
+			@Override
+			public int getInt(int slot) {
+				return Solution.this.getInt(slot);
+			}
+
+			@Override
+			public long getLong(int slot) {
+				return Solution.this.getLong(slot);
+			}
+
+			@Override
+			public double getDouble(int slot) {
+				return Solution.this.getDouble(slot);
+			}
+
 		};
 	}
 
+	/**
+	 * Returns a sequential stream of the values of the primary variable. The
+	 * solutions are fetched lazily, one by one, as the stream is consumed, so
+	 * they are not required to be held in memory at the same time.
+	 * <p>
+	 * The open alternatives of the engine are released when the last solution
+	 * has been fetched. If the stream is not consumed entirely (e.g. because
+	 * of <tt>limit</tt> or <tt>findFirst</tt>), it should be closed, which
+	 * closes the solution as well:
+	 * <pre>
+	 * try (Stream&lt;String&gt; s = p.&lt;String&gt;solve("mortal(X).").stream()) {
+	 *     first = s.findFirst();
+	 * }
+	 * </pre>
+	 * 
+	 * @return a stream of the values of the variable of interest
+	 */
+	public Stream<S> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+				iterator(), Spliterator.ORDERED), false).onClose(this::close);
+	}
+
+	/**
+	 * Moves to the next solution, so that the values bound by it can be read
+	 * by {@link #get(String)} and the like. The first call moves to the first
+	 * solution. When there are no more solutions, the solution is closed.
+	 * <p>
+	 * Unlike {@link #iterator()}, it does not convert the value of the 
+	 * primary variable at each solution. The two ways of traversal must not
+	 * be mixed.
+	 * 
+	 * @return <tt>true</tt> if there was another solution, otherwise 
+	 *         <tt>false</tt>
+	 */
+	public boolean nextSolution() {
+		if (cursor == 2) {
+			return false;
+		}
+		boolean found = cursor == 0 ? isSuccess() : fetchNext();
+		cursor = found ? 1 : 2;
+		if (!found) {
+			close();
+		}
+		return found;
+	}
+
+	/**
+	 * Discards the open alternatives of the query, so that the engine can 
+	 * release the memory held for finding the further solutions. After this,
+	 * no more solutions can be fetched. It is called automatically when the 
+	 * last solution has been fetched. Closing a solution more than once has
+	 * no effect.
+	 * <p>
+	 * The default implementation only reports the closing to the listeners.
+	 * The implementations that override it have to call {@link #closed()}.
+	 */
+	@Override
+	public void close() {
+		closed();
+	}
+
+	/**
+	 * Stops the engine if it is looking for the next solution. It is called
+	 * from another thread when the subscription of a {@link #publisher()} is
+	 * cancelled. By default it does nothing, the implementations whose engine
+	 * can be halted override it.
+	 */
+	protected void halt() {
+	}
+
+	/**
+	 * Returns a publisher of the values of the primary variable. The 
+	 * solutions are fetched on demand, as the subscriber requests them, on a
+	 * dedicated thread that is stopped when the subscription ends. Cancelling
+	 * the subscription halts the engine if it is looking for a solution and
+	 * the implementation supports halting. 
+	 * <p>
+	 * The solutions can be traversed only once, so the publisher accepts 
+	 * only one subscriber.
+	 * 
+	 * @return a publisher of the values of the variable of interest
+	 */
+	public Flow.Publisher<S> publisher() {
+		return new SolutionPublisher<S>(this);
+	}
+
+	/**
+	 * Returns a publisher of the values of the primary variable, whose 
+	 * solutions are fetched by the given executor. The executor must not run
+	 * its tasks concurrently, and for engines bound to a thread it has to run
+	 * them on the thread that has solved the goal, e.g. on
+	 * {@link Prover#getExecutor()}.
+	 * 
+	 * @param executor the executor that fetches the solutions
+	 * @return a publisher of the values of the variable of interest
+	 * @see #publisher()
+	 */
+	public Flow.Publisher<S> publisher(Executor executor) {
+		return new SolutionPublisher<S>(this, executor);
+	}
+
 	/**
 	 * Collects the values of the primary variable into the given collection.
 	 * Returns its parameter.
@@ -233,10 +767,17 @@ public abstract class Solution<S> implements Iterable<S> {
 	@SuppressWarnings("unchecked")
 	public final void collect(String[] variables, Collection[] collections) {
 		SolutionIterator it = iterator();
+		int[] slots = null;
 		while (it.hasNext()) {
 			it.next();
+			if (slots == null) {
+				slots = new int[variables.length];
+				for (int i = 0; i < variables.length; ++i) {
+					slots[i] = it.slotOf(variables[i]);
+				}
+			}
 			for (int i = 0; i < variables.length; ++i) {
-				collections[i].add(it.get(variables[i]));
+				collections[i].add(it.get(slots[i]));
 			}
 		}
 	}
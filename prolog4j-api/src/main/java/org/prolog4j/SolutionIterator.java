@@ -63,4 +63,101 @@ public interface SolutionIterator<S> extends Iterator<S> {
 	 */
 	<A> A get(String variable, Class<A> type);
 
+	/**
+	 * Returns the value of the variable bound by the current solution, as an
+	 * <tt>int</tt>. The variable must be bound to a number.
+	 * 
+	 * @param variable
+	 *            the name of the variable
+	 * @return the value of the variable in the current solution
+	 */
+	int getInt(String variable);
+
+	/**
+	 * Returns the value of the variable bound by the current solution, as a
+	 * <tt>long</tt>. The variable must be bound to a number.
+	 * 
+	 * @param variable
+	 *            the name of the variable
+	 * @return the value of the variable in the current solution
+	 */
+	long getLong(String variable);
+
+	/**
+	 * Returns the value of the variable bound by the current solution, as a
+	 * <tt>double</tt>. The variable must be bound to a number.
+	 * 
+	 * @param variable
+	 *            the name of the variable
+	 * @return the value of the variable in the current solution
+	 */
+	double getDouble(String variable);
+
+	/**
+	 * Returns the slot of the given variable, by which its value can be read
+	 * from each solution without looking up the variable by name.
+	 * 
+	 * @param variable
+	 *            the name of the variable
+	 * @return the slot of the variable
+	 * @see Solution#slotOf(String)
+	 */
+	int slotOf(String variable);
+
+	/**
+	 * Returns the value of the variable of the given slot bound by the
+	 * current solution.
+	 * 
+	 * @param <A>
+	 *            the type of the value
+	 * @param slot
+	 *            the slot of the variable, returned by {@link #slotOf(String)}
+	 * @return the value of the variable in the current solution
+	 */
+	<A> A get(int slot);
+
+	/**
+	 * Returns the value of the variable of the given slot bound by the
+	 * current solution, converted to the given type.
+	 * 
+	 * @param <A>
+	 *            the type of the value
+	 * @param slot
+	 *            the slot of the variable, returned by {@link #slotOf(String)}
+	 * @param type
+	 *            the type which the value should be converted to
+	 * @return the value of the variable in the current solution
+	 */
+	<A> A get(int slot, Class<A> type);
+
+	/**
+	 * Returns the value of the variable of the given slot bound by the
+	 * current solution, as an <tt>int</tt>.
+	 * 
+	 * @param slot
+	 *            the slot of the variable, returned by {@link #slotOf(String)}
+	 * @return the value of the variable in the current solution
+	 */
+	int getInt(int slot);
+
+	/**
+	 * Returns the value of the variable of the given slot bound by the
+	 * current solution, as a <tt>long</tt>.
+	 * 
+	 * @param slot
+	 *            the slot of the variable, returned by {@link #slotOf(String)}
+	 * @return the value of the variable in the current solution
+	 */
+	long getLong(int slot);
+
+	/**
+	 * Returns the value of the variable of the given slot bound by the
+	 * current solution, as a <tt>double</tt>.
+	 * 
+	 * @param slot
+	 *            the slot of the variable, returned by {@link #slotOf(String)}
+	 * @return the value of the variable in the current solution
+	 */
+	double getDouble(int slot);
+
 }
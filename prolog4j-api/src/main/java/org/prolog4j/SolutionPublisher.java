@@ -0,0 +1,286 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the values of the primary variable of a solution. The solutions
+ * are fetched on the executor of the publisher, only as many as the 
+ * subscriber has requested, so they are not buffered. The solutions can be 
+ * traversed only once, so the publisher accepts only one subscriber.
+ * 
+ * @param <S> the type of the published values
+ * @see Solution#publisher()
+ */
+class SolutionPublisher<S> implements Flow.Publisher<S> {
+
+	/** The solution to publish. */
+	private final Solution<S> solution;
+
+	/** The executor that fetches the solutions. */
+	private final Executor executor;
+
+	/** 
+	 * Whether the executor has been created for the publisher and has to be
+	 * shut down at the end.
+	 */
+	private final boolean ownExecutor;
+
+	/** Whether a subscriber has already subscribed. */
+	private final AtomicBoolean subscribed = new AtomicBoolean();
+
+	/** The number of the dedicated threads created so far. */
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	/** Creates the dedicated threads of the publishers. */
+	private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, 
+					"prolog4j-publisher-" + THREAD_COUNT.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	/**
+	 * Creates a publisher that fetches the solutions on a dedicated thread.
+	 * 
+	 * @param solution the solution to publish
+	 */
+	SolutionPublisher(Solution<S> solution) {
+		this.solution = solution;
+		this.executor = Executors.newSingleThreadExecutor(THREAD_FACTORY);
+		this.ownExecutor = true;
+	}
+
+	/**
+	 * Creates a publisher that fetches the solutions on the given executor.
+	 * 
+	 * @param solution the solution to publish
+	 * @param executor the executor that fetches the solutions
+	 */
+	SolutionPublisher(Solution<S> solution, Executor executor) {
+		this.solution = solution;
+		this.executor = executor;
+		this.ownExecutor = false;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super S> subscriber) {
+		if (!subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+				}
+				@Override
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException(
+					"The solution has already been subscribed to."));
+			return;
+		}
+		Subscription subscription = new Subscription(subscriber);
+		subscriber.onSubscribe(subscription);
+	}
+
+	/**
+	 * The subscription of the only subscriber. The solutions are fetched by
+	 * a drain loop that runs on the executor while there is demand. At most
+	 * one drain loop runs at a time.
+	 */
+	private final class Subscription implements Flow.Subscription, Runnable {
+
+		/** The subscriber. */
+		private final Flow.Subscriber<? super S> subscriber;
+
+		/** The iterator of the solution. */
+		private final SolutionIterator<S> iterator = solution.iterator();
+
+		/** The number of values requested but not yet published. */
+		private final AtomicLong demand = new AtomicLong();
+
+		/** The number of drain requests not yet served. */
+		private final AtomicInteger pending = new AtomicInteger();
+
+		/** Whether the engine is looking for a solution. */
+		private final AtomicBoolean fetching = new AtomicBoolean();
+
+		/** Whether the subscription has been cancelled. */
+		private volatile boolean cancelled;
+
+		/** The error caused by an invalid request, to be signalled. */
+		private volatile Throwable error;
+
+		/** Whether the subscription has ended, normally or not. */
+		private boolean done;
+
+		/**
+		 * Creates a subscription.
+		 * 
+		 * @param subscriber the subscriber
+		 */
+		Subscription(Flow.Subscriber<? super S> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				error = new IllegalArgumentException("Non-positive request: " + n);
+			} else {
+				long current;
+				do {
+					current = demand.get();
+				} while (!demand.compareAndSet(current, 
+						current + n < 0 ? Long.MAX_VALUE : current + n));
+			}
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			if (fetching.get()) {
+				solution.halt();
+			}
+			drain();
+		}
+
+		/**
+		 * Schedules the drain loop unless it is already running.
+		 */
+		private void drain() {
+			if (pending.getAndIncrement() == 0) {
+				try {
+					executor.execute(this);
+				} catch (RejectedExecutionException e) {
+					// The subscription has ended and the executor is shut down.
+				}
+			}
+		}
+
+		/**
+		 * The drain loop. It publishes values while there is demand.
+		 */
+		@Override
+		public void run() {
+			int missed = 1;
+			do {
+				if (!done) {
+					publish();
+				}
+				missed = pending.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		/**
+		 * Publishes the requested values, or finishes the subscription if it
+		 * has been cancelled or there are no more solutions.
+		 */
+		private void publish() {
+			if (error != null) {
+				finish();
+				subscriber.onError(error);
+				return;
+			}
+			try {
+				while (!cancelled && demand.get() > 0) {
+					fetching.set(true);
+					boolean hasNext;
+					try {
+						// cancel() halts the engine only if it sees the flag set
+						if (cancelled) {
+							break;
+						}
+						hasNext = iterator.hasNext();
+					} finally {
+						fetching.set(false);
+					}
+					if (cancelled) {
+						break;
+					}
+					if (!hasNext) {
+						finish();
+						subscriber.onComplete();
+						return;
+					}
+					S value = iterator.next();
+					demand.decrementAndGet();
+					try {
+						subscriber.onNext(value);
+					} catch (RuntimeException e) {
+						// The subscriber is broken, it must not be signalled any more.
+						cancelled = true;
+						finish();
+						reportFailure(e);
+						return;
+					}
+				}
+				if (cancelled) {
+					finish();
+				}
+			} catch (RuntimeException e) {
+				finish();
+				subscriber.onError(e);
+			}
+		}
+
+		/**
+		 * Reports an exception thrown by the subscriber, which cannot be 
+		 * signalled to the subscriber itself.
+		 * 
+		 * @param e the exception thrown by <tt>onNext</tt>
+		 */
+		private void reportFailure(RuntimeException e) {
+			System.err.println("Prolog4J: The subscriber of a solution failed, "
+					+ "the subscription is cancelled.");
+			System.err.println("Reported exception:");
+			e.printStackTrace();
+		}
+
+		/**
+		 * Releases the solution and the executor.
+		 */
+		private void finish() {
+			done = true;
+			solution.close();
+			if (ownExecutor) {
+				((ExecutorService) executor).shutdown();
+			}
+		}
+
+	}
+
+}
@@ -1,7 +1,21 @@
 package org.prolog4j.annotations;
 
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * Binds a Java element to a variable of a goal. On a {@link Goal} method, it
+ * names the variable whose value is returned. On a field of a class or on a
+ * component of a record that is the element type of the <tt>List</tt>,
+ * <tt>Stream</tt> or <tt>Optional</tt> returned by a goal method, it names
+ * the variable whose value is stored in the field or component.
+ */
+@Retention(RetentionPolicy.RUNTIME)
 public @interface Bind {
 
+	/**
+	 * The name of the variable.
+	 */
 	String value();
-	
+
 }
@@ -68,9 +68,13 @@ public @interface Goal {
 //    String out() default "";
 
     /**
-     * By default, goals are stored as precompiled Query objects in static
-     * fields of the class. If <tt>cache</tt> is set to <tt>false</tt>, no
-     * such field will be generated.
+     * By default, goals are stored as precompiled 
+     * {@link org.prolog4j.PreparedQuery PreparedQuery} objects in static
+     * fields of the class. Prepared queries are immutable, so goal methods can
+     * be called by several threads. If <tt>cache</tt> is set to <tt>false</tt>,
+     * no such field will be generated, and the goal is solved by
+     * {@link org.prolog4j.Prover#solve(String, Object...) Prover.solve}, 
+     * which takes the parsed goal from the query cache of the prover.
      */
     boolean cache() default true;
     
@@ -0,0 +1,57 @@
+package org.prolog4j.apt;
+
+import static org.objectweb.asm.Opcodes.ASM9;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.AnnotationVisitor;
+
+/**
+ * Collects the values of an annotation. The names and the values are stored
+ * alternately in {@link #values}, the values of arrays as lists.
+ */
+class AnnotationValues extends AnnotationVisitor {
+
+	/** The names and values of the annotation, alternately. */
+	final List<Object> values = new ArrayList<Object>();
+
+	AnnotationValues() {
+		super(ASM9);
+	}
+
+	@Override
+	public void visit(String name, Object value) {
+		values.add(name);
+		values.add(value);
+	}
+
+	@Override
+	public AnnotationVisitor visitArray(String name) {
+		final List<Object> array = new ArrayList<Object>();
+		values.add(name);
+		values.add(array);
+		return new AnnotationVisitor(ASM9) {
+			@Override
+			public void visit(String name, Object value) {
+				array.add(value);
+			}
+		};
+	}
+
+	/**
+	 * Returns the value of the given element of the annotation.
+	 *
+	 * @param name the name of the element
+	 * @return the value of the element, or <tt>null</tt> if it is not given
+	 */
+	Object getValue(String name) {
+		for (int i = 0; i < values.size(); i += 2) {
+			if (name.equals(values.get(i))) {
+				return values.get(i + 1);
+			}
+		}
+		return null;
+	}
+
+}
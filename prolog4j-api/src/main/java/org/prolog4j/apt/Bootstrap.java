@@ -1,54 +1,189 @@
 package org.prolog4j.apt;
 
-import java.io.PrintWriter;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.lang.instrument.Instrumentation;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.security.ProtectionDomain;
-import java.util.regex.Pattern;
-
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassVisitor;
-import org.objectweb.asm.ClassWriter;
-import org.objectweb.asm.util.ASMifierClassVisitor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
+/**
+ * The Java agent that weaves the classes having Prolog4J annotations when
+ * they are loaded. The agent can be configured by arguments of the form
+ * <tt>key=value</tt>, separated by semicolons, e.g.:
+ * <pre>
+ * -javaagent:prolog4j-api.jar=include=com.acme.rules,com.acme.kb;dump=target/woven
+ * </pre>
+ * The following arguments are recognized:
+ * <dl>
+ * <dt><tt>include</tt></dt>
+ * <dd>Comma separated list of package prefixes. If given, only the classes
+ * of these packages are woven.</dd>
+ * <dt><tt>exclude</tt></dt>
+ * <dd>Comma separated list of package prefixes whose classes are not woven,
+ * in addition to the packages of the JDK and the Prolog engines.</dd>
+ * <dt><tt>dump</tt></dt>
+ * <dd>A directory to which the woven class files are written, for
+ * diagnostics.</dd>
+ * </dl>
+ * The package prefixes can be given either with dots or with slashes.
+ */
 public class Bootstrap {
 
+	/** The packages that are never woven. */
+	private static final String[] DEFAULT_EXCLUDES = {
+		"sun/", "jdk/", "java/", "javax/", "alice/", "ubc/cs/JLog/"
+	};
+
 	public static void premain(String agentArguments, Instrumentation instrumentation) {
-		instrumentation.addTransformer(new ClassFileTransformer() {
-
-			Pattern excludePattern = 
-				Pattern.compile("^(sun/|java/|javax/|alice/|ubc/cs/JLog/).*");
-
-			@Override
-			public byte[] transform(ClassLoader loader, String className,
-					Class<?> classBeingRedefined, ProtectionDomain protectionDomain,
-					byte[] classfileBuffer) throws IllegalClassFormatException {
-				
-				if (excludePattern.matcher(className).matches()) {
-					return classfileBuffer;
+		instrumentation.addTransformer(new Transformer(agentArguments, readIndex()));
+	}
+
+	/**
+	 * Reads the names of the classes that have been woven at build time from
+	 * the {@link Weaver#INDEX} resources on the class path.
+	 *
+	 * @return the internal names of the woven classes
+	 */
+	private static Set<String> readIndex() {
+		Set<String> wovenClasses = new HashSet<String>();
+		try {
+			Enumeration<URL> indexes =
+				ClassLoader.getSystemClassLoader().getResources(Weaver.INDEX);
+			while (indexes.hasMoreElements()) {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(
+						indexes.nextElement().openStream(), StandardCharsets.UTF_8));
+				try {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						line = line.trim();
+						if (line.length() > 0) {
+							wovenClasses.add(line);
+						}
+					}
+				} finally {
+					reader.close();
 				}
+			}
+		} catch (IOException e) {
+			// The classes will be scanned.
+		}
+		return wovenClasses;
+	}
+
+	/**
+	 * Weaves the loaded classes according to the arguments of the agent.
+	 */
+	private static class Transformer implements ClassFileTransformer {
 
-				ClassReader cr = new ClassReader(classfileBuffer);
-				ClassWriter cw = new ClassWriter(cr, 0);
+		private final Weaver weaver = new Weaver();
+		private final Set<String> wovenClasses;
+		private String[] includes = {};
+		private String[] excludes = DEFAULT_EXCLUDES;
+		private File dumpDir;
 
-				P4JAnnotationVisitor p4jVisitor = new P4JAnnotationVisitor();
-				cr.accept(p4jVisitor, 0);
-				ClassVisitor cv = cw;
-				if (!p4jVisitor.goalMethods.isEmpty()
-					|| p4jVisitor.theoryAnn != null) {
-					cv = new GoalAdapter(cv, className, p4jVisitor);
+		Transformer(String agentArguments, Set<String> wovenClasses) {
+			this.wovenClasses = wovenClasses;
+			if (agentArguments == null) {
+				return;
+			}
+			for (String argument : agentArguments.split(";")) {
+				argument = argument.trim();
+				if (argument.length() == 0) {
+					continue;
+				}
+				int eq = argument.indexOf('=');
+				String key = eq == -1 ? argument : argument.substring(0, eq).trim();
+				String value = eq == -1 ? "" : argument.substring(eq + 1).trim();
+				if (key.equals("include")) {
+					includes = packages(value);
+				} else if (key.equals("exclude")) {
+					List<String> list = new ArrayList<String>(Arrays.asList(DEFAULT_EXCLUDES));
+					list.addAll(Arrays.asList(packages(value)));
+					excludes = list.toArray(new String[list.size()]);
+				} else if (key.equals("dump")) {
+					dumpDir = new File(value);
+				} else {
+					throw new IllegalArgumentException(
+							"Unknown Prolog4J agent argument: " + key);
+				}
+			}
+		}
+
+		private static String[] packages(String value) {
+			List<String> packages = new ArrayList<String>();
+			for (String pkg : value.split(",")) {
+				pkg = pkg.trim().replace('.', '/');
+				if (pkg.length() > 0) {
+					packages.add(pkg.endsWith("/") ? pkg : pkg + '/');
 				}
-				cr.accept(cv, 0);
-				if (className.equals("org/prolog4j/GoalTest")) {
-					ClassReader cr2 = new ClassReader(cw.toByteArray());
-//					cr.accept(new ASMifierClassVisitor(new PrintWriter(System.out)), 0);
-					cr2.accept(new ASMifierClassVisitor(new PrintWriter(System.out)), 0);
+			}
+			return packages.toArray(new String[packages.size()]);
+		}
+
+		private boolean isIncluded(String className) {
+			if (includes.length > 0 && !startsWithAny(className, includes)) {
+				return false;
+			}
+			return !startsWithAny(className, excludes);
+		}
+
+		private static boolean startsWithAny(String className, String[] prefixes) {
+			for (String prefix : prefixes) {
+				if (className.startsWith(prefix)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public byte[] transform(ClassLoader loader, String className,
+				Class<?> classBeingRedefined, ProtectionDomain protectionDomain,
+				byte[] classfileBuffer) throws IllegalClassFormatException {
+
+			if (className == null || !isIncluded(className)) {
+				return null;
+			}
+			if (wovenClasses.contains(className) 
+					&& Weaver.isWoven(classfileBuffer)) {
+				// The class has not been recompiled since the build-time weaving.
+				return null;
+			}
+
+			byte[] woven = weaver.weave(className, classfileBuffer);
+			if (woven != null && dumpDir != null) {
+				dump(className, woven);
+			}
+			return woven;
+		}
+
+		private void dump(String className, byte[] classfile) {
+			File file = new File(dumpDir, className + ".class");
+			file.getParentFile().mkdirs();
+			try {
+				OutputStream out = new FileOutputStream(file);
+				try {
+					out.write(classfile);
+				} finally {
+					out.close();
 				}
-				
-				return cw.toByteArray();
+			} catch (IOException e) {
+				System.err.println("Prolog4J: cannot dump " + className + ": " + e);
 			}
-		});
+		}
 	}
 
 }
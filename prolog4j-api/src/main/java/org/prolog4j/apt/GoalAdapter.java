@@ -2,30 +2,29 @@ package org.prolog4j.apt;
 
 import static org.objectweb.asm.Opcodes.*;
 
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
-import org.objectweb.asm.ClassAdapter;
 import org.objectweb.asm.ClassVisitor;
-import org.objectweb.asm.MethodAdapter;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.AnnotationNode;
 import org.prolog4j.apt.P4JAnnotationVisitor.GoalVisitor;
 
-class GoalAdapter extends ClassAdapter {
+class GoalAdapter extends ClassVisitor {
 
 	String className, classDesc;
-	private AnnotationNode theoryAnn;
+	private AnnotationValues theoryAnn;
 	private Set<String> goalMethods;
 	LinkedList<GoalVisitor> goalVisitors;
 	private int lastProcessedQuery;
 	private boolean clinit;
+	/** The major version of the class file. */
+	private int classVersion;
 	
 	public GoalAdapter(ClassVisitor cv, String internalClassName, P4JAnnotationVisitor ta) {
-		super(cv);
+		super(ASM9, cv);
 		this.classDesc = internalClassName;
 		this.className = internalClassName.replace('/', '.');;
 		this.theoryAnn = ta.theoryAnn;
@@ -33,6 +32,13 @@ class GoalAdapter extends ClassAdapter {
 		this.goalMethods = ta.goalMethods;
 	}
 
+	@Override
+	public void visit(int version, int access, String name, String signature,
+			String superName, String[] interfaces) {
+		classVersion = version & 0xFFFF;
+		super.visit(version, access, name, signature, superName, interfaces);
+	}
+
 	@Override
 	public MethodVisitor visitMethod(int access, String name, String desc,
 			String signature, String[] exceptions) {
@@ -45,17 +51,18 @@ class GoalAdapter extends ClassAdapter {
 		}
 		if (name.equals("<clinit>")) {
 			MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
-			MethodAdapter ma = new MethodAdapter(mv) {
+			MethodVisitor ma = new MethodVisitor(ASM9, mv) {
+				private int stack;
+				// The fields are initialized before the original code of the
+				// static initializer, so that it can call the goal methods.
 				@Override
-				public void visitInsn(int opcode) {
-					if (opcode == RETURN) {
-						insertStaticInitialization(super.mv);
-					}
-					super.visitInsn(opcode);
+				public void visitCode() {
+					super.visitCode();
+					stack = insertStaticInitialization(super.mv);
 				}
 				@Override
 				public void visitMaxs(int maxStack, int maxLocals) {
-					super.visitMaxs(Math.max(2, maxStack), maxLocals);
+					super.visitMaxs(Math.max(stack, maxStack), maxLocals);
 				}
 			};
 			clinit = true;
@@ -85,22 +92,76 @@ class GoalAdapter extends ClassAdapter {
 		WRAPPER_DESC[Type.DOUBLE] = "(D)Ljava/lang/Double;";
 	}
 	
+	/**
+	 * The descriptors of the <tt>ConversionPolicy.term</tt> methods that 
+	 * create a term from a primitive value, indexed by the sort of the type.
+	 */
+	private static final String[] TERM_DESC = new String[Type.OBJECT + 1];
+	/**
+	 * The <tt>Solution</tt> methods that return the value of a variable as a 
+	 * primitive value, indexed by the sort of the type to return.
+	 */
+	private static final String[] GETTER_NAME = new String[Type.OBJECT + 1];
+	/** The return type descriptors of the methods in {@link #GETTER_NAME}. */
+	private static final String[] GETTER_RETURN_DESC = new String[Type.OBJECT + 1];
+	/** 
+	 * The opcodes that convert the result of the methods in 
+	 * {@link #GETTER_NAME} to the type to return, or 0 if not needed.
+	 */
+	private static final int[] NARROWING = new int[Type.OBJECT + 1];
+	static {
+		TERM_DESC[Type.BOOLEAN] = "(Z)Ljava/lang/Object;";
+		TERM_DESC[Type.BYTE] = "(I)Ljava/lang/Object;";
+		TERM_DESC[Type.SHORT] = "(I)Ljava/lang/Object;";
+		TERM_DESC[Type.INT] = "(I)Ljava/lang/Object;";
+		TERM_DESC[Type.FLOAT] = "(F)Ljava/lang/Object;";
+		TERM_DESC[Type.LONG] = "(J)Ljava/lang/Object;";
+		TERM_DESC[Type.DOUBLE] = "(D)Ljava/lang/Object;";
+		GETTER_NAME[Type.BYTE] = "getInt";
+		GETTER_NAME[Type.SHORT] = "getInt";
+		GETTER_NAME[Type.INT] = "getInt";
+		GETTER_NAME[Type.FLOAT] = "getDouble";
+		GETTER_NAME[Type.LONG] = "getLong";
+		GETTER_NAME[Type.DOUBLE] = "getDouble";
+		GETTER_RETURN_DESC[Type.BYTE] = "I";
+		GETTER_RETURN_DESC[Type.SHORT] = "I";
+		GETTER_RETURN_DESC[Type.INT] = "I";
+		GETTER_RETURN_DESC[Type.FLOAT] = "D";
+		GETTER_RETURN_DESC[Type.LONG] = "J";
+		GETTER_RETURN_DESC[Type.DOUBLE] = "D";
+		NARROWING[Type.BYTE] = I2B;
+		NARROWING[Type.SHORT] = I2S;
+		NARROWING[Type.FLOAT] = D2F;
+	}
+	
+	/** The bootstrap method of the call sites of the goal methods. */
+	private static final Handle BOOTSTRAP = new Handle(H_INVOKESTATIC, 
+			"org/prolog4j/apt/GoalBootstrap", "link", 
+			"(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;"
+			+ "Ljava/lang/invoke/MethodType;Ljava/lang/String;ILjava/lang/String;)"
+			+ "Ljava/lang/invoke/CallSite;", false);
+
 	private MethodVisitor generateBody(GoalVisitor gv, int access, String name, String desc,
 			String signature, String[] exceptions) {
 		
+		AnnotationValues an = gv.goalAnnotation;
+		boolean cache = isCached(an);
+		AnnotationValues outBind = gv.bindAnnotations.get(-1);
+		String outVar = outBind != null 
+			? (String) outBind.getValue("value") : null;
+		if (classVersion >= V1_7) {
+			return generateDynamicBody(an, cache, outVar, access, name, desc, 
+					signature, exceptions);
+		}
 		MethodVisitor mv = cv.visitMethod(access, name, desc, signature, exceptions);
 		mv.visitCode();
 		int stack = 6, locals = 1;
-		AnnotationNode an = gv.goalAnnotation;
-		Boolean cacheB = (Boolean) getValue(an, "cache");
-		boolean cache = cacheB == null ? true : cacheB;
-		AnnotationNode outBind = gv.bindAnnotations.get(-1);
-		String outVar = outBind != null 
-			? (String) outBind.values.get(1) : null;
 		if (!cache) {
-			mv.visitLdcInsn(className);
-			mv.visitMethodInsn(INVOKESTATIC, "org/prolog4j/ProverFactory", "getProver", "(Ljava/lang/String;)Lorg/prolog4j/Prover;");
-			mv.visitLdcInsn(getValue(an, "value"));
+			// The prover is already initialized by the static initializer, and 
+			// Prover.solve(String, Object...) reuses the parsed goal from the 
+			// query cache of the prover.
+			mv.visitFieldInsn(GETSTATIC, classDesc, "$P4J_PROVER", "Lorg/prolog4j/Prover;");
+			mv.visitLdcInsn(an.getValue("value"));
 		} else {
 			mv.visitFieldInsn(GETSTATIC, classDesc, "$P4J_GOAL_" + lastProcessedQuery, "Lorg/prolog4j/Query;");
 		}
@@ -120,54 +181,78 @@ class GoalAdapter extends ClassAdapter {
 				mv.visitIntInsn(BIPUSH, i);
 			}
 			Type argType = argumentTypes[i];
-			mv.visitVarInsn(argType.getOpcode(ILOAD), locals);
-			int sort = argType.getSort();
-			if (sort < 9) {
-				mv.visitMethodInsn(INVOKESTATIC, WRAPPER_CLASS[sort], 
-						"valueOf", WRAPPER_DESC[sort]);
+			String termDesc = TERM_DESC[argType.getSort()];
+			if (termDesc != null) {
+				// The term is created directly from the primitive value.
+				mv.visitFieldInsn(GETSTATIC, classDesc, "$P4J_PROVER", "Lorg/prolog4j/Prover;");
+				mv.visitMethodInsn(INVOKEINTERFACE, "org/prolog4j/Prover", 
+						"getConversionPolicy", "()Lorg/prolog4j/ConversionPolicy;", true);
+				mv.visitVarInsn(argType.getOpcode(ILOAD), locals);
+				mv.visitMethodInsn(INVOKEVIRTUAL, "org/prolog4j/ConversionPolicy", 
+						"term", termDesc, false);
+				stack = 8;
+			} else {
+				mv.visitVarInsn(argType.getOpcode(ILOAD), locals);
+				int sort = argType.getSort();
+				if (sort < 9) {
+					mv.visitMethodInsn(INVOKESTATIC, WRAPPER_CLASS[sort], 
+							"valueOf", WRAPPER_DESC[sort], false);
+				}
 			}
 			mv.visitInsn(AASTORE);
 			locals += argType.getSize();
-			if (argType.getSize() == 2) {
-				stack = 7;
-			}
 		}
 		if (!cache) {
 			mv.visitMethodInsn(INVOKEINTERFACE, "org/prolog4j/Prover", 
-					"solve", "(Ljava/lang/String;[Ljava/lang/Object;)Lorg/prolog4j/Solution;");
+					"solve", "(Ljava/lang/String;[Ljava/lang/Object;)Lorg/prolog4j/Solution;", true);
 		} else {
 			mv.visitMethodInsn(INVOKEVIRTUAL, "org/prolog4j/Query", 
-					"solve", "([Ljava/lang/Object;)Lorg/prolog4j/Solution;");
+					"solve", "([Ljava/lang/Object;)Lorg/prolog4j/Solution;", false);
 		}
 		Type returnType = Type.getReturnType(desc);
 		String retTypeDesc = returnType.getDescriptor();
 		if (retTypeDesc.equals("Lorg/prolog4j/Solution;")) {
 			if (outVar != null) {
 				mv.visitLdcInsn(outVar);
-				mv.visitMethodInsn(INVOKEVIRTUAL, "org/prolog4j/Solution", "on", "(Ljava/lang/String;)Lorg/prolog4j/Solution;");
+				mv.visitMethodInsn(INVOKEVIRTUAL, "org/prolog4j/Solution", "on", "(Ljava/lang/String;)Lorg/prolog4j/Solution;", false);
 			}
 			mv.visitInsn(ARETURN);
 		} else if (returnType == Type.BOOLEAN_TYPE) {
-			mv.visitMethodInsn(INVOKEVIRTUAL, "org/prolog4j/Solution", "isSuccess", "()Z");
+			mv.visitMethodInsn(INVOKEVIRTUAL, "org/prolog4j/Solution", "isSuccess", "()Z", false);
 			mv.visitInsn(IRETURN);
 		} else if (retTypeDesc.equals("Ljava/lang/Boolean;")) {
-			mv.visitMethodInsn(INVOKEVIRTUAL, "org/prolog4j/Solution", "isSuccess", "()Z");
-			mv.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+			mv.visitMethodInsn(INVOKEVIRTUAL, "org/prolog4j/Solution", "isSuccess", "()Z", false);
+			mv.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;", false);
 			mv.visitInsn(ARETURN);
+		} else if (GETTER_NAME[returnType.getSort()] != null) {
+			// The value is read directly from the term, without boxing.
+			int sort = returnType.getSort();
+			String getter = GETTER_NAME[sort];
+			String getterRetDesc = GETTER_RETURN_DESC[sort];
+			if (outVar != null) {
+				mv.visitLdcInsn(outVar);
+				mv.visitMethodInsn(INVOKEVIRTUAL, "org/prolog4j/Solution", getter, "(Ljava/lang/String;)" + getterRetDesc, false);
+			} else {
+				mv.visitMethodInsn(INVOKEVIRTUAL, "org/prolog4j/Solution", getter, "()" + getterRetDesc, false);
+			}
+			if (NARROWING[sort] != 0) {
+				mv.visitInsn(NARROWING[sort]);
+			}
+			mv.visitInsn(returnType.getOpcode(IRETURN));
 		} else {
 			if (outVar != null) {
 				mv.visitLdcInsn(outVar);
-				mv.visitMethodInsn(INVOKEVIRTUAL, "org/prolog4j/Solution", "get", "(Ljava/lang/String;)Ljava/lang/Object;");
+				mv.visitMethodInsn(INVOKEVIRTUAL, "org/prolog4j/Solution", "get", "(Ljava/lang/String;)Ljava/lang/Object;", false);
 			} else {
-				mv.visitMethodInsn(INVOKEVIRTUAL, "org/prolog4j/Solution", "get", "()Ljava/lang/Object;");
+				mv.visitMethodInsn(INVOKEVIRTUAL, "org/prolog4j/Solution", "get", "()Ljava/lang/Object;", false);
 			}
 			Type wrapperType = getWrapperType(returnType);
-			String wrapperTypeDesc = wrapperType.getDescriptor();
-			mv.visitTypeInsn(CHECKCAST, wrapperTypeDesc);
+			String wrapperTypeName = wrapperType.getInternalName();
+			mv.visitTypeInsn(CHECKCAST, wrapperTypeName);
 			if (wrapperType != returnType) {
-				mv.visitMethodInsn(INVOKEVIRTUAL, wrapperTypeDesc, 
+				mv.visitMethodInsn(INVOKEVIRTUAL, wrapperTypeName, 
 						returnType.getClassName() + "Value",
-						"()" + retTypeDesc);
+						"()" + retTypeDesc, false);
 			}
 			mv.visitInsn(returnType.getOpcode(IRETURN));
 		}
@@ -177,6 +262,46 @@ class GoalAdapter extends ClassAdapter {
 		return mv;
 	}
 
+	/**
+	 * Generates the body of a goal method as a single <tt>invokedynamic</tt> 
+	 * instruction that receives the arguments without boxing. The call site
+	 * is linked by {@link GoalBootstrap}.
+	 */
+	private MethodVisitor generateDynamicBody(AnnotationValues an, boolean cache, 
+			String outVar, int access, String name, String desc, 
+			String signature, String[] exceptions) {
+		
+		MethodVisitor mv = cv.visitMethod(access, name, desc, signature, exceptions);
+		mv.visitCode();
+		int locals = (access & ACC_STATIC) != 0 ? 0 : 1;
+		for (Type argType : Type.getArgumentTypes(desc)) {
+			mv.visitVarInsn(argType.getOpcode(ILOAD), locals);
+			locals += argType.getSize();
+		}
+		Type returnType = Type.getReturnType(desc);
+		mv.visitInvokeDynamicInsn(name, desc, BOOTSTRAP, 
+				an.getValue("value"), cache ? lastProcessedQuery : -1, 
+				outVar != null ? outVar : "");
+		mv.visitInsn(returnType.getOpcode(IRETURN));
+		int argSize = locals - ((access & ACC_STATIC) != 0 ? 0 : 1);
+		mv.visitMaxs(Math.max(argSize, returnType.getSize()), locals);
+		mv.visitEnd();
+		return mv;
+	}
+
+	/**
+	 * Tells whether the goal is stored as a prepared query in a static field.
+	 * The goals of <tt>@Goal(cache = false)</tt> methods are not, they are 
+	 * solved by {@link org.prolog4j.Prover#solve(String, Object...)}.
+	 * 
+	 * @param an the values of the <tt>@Goal</tt> annotation
+	 * @return the value of <tt>cache</tt>
+	 */
+	private static boolean isCached(AnnotationValues an) {
+		Boolean cache = (Boolean) an.getValue("cache");
+		return cache == null || cache;
+	}
+
 	private Type getWrapperType(Type type) {
 		switch (type.getSort()) {
 		case Type.BOOLEAN: return Type.getObjectType("java/lang/Boolean");
@@ -197,7 +322,9 @@ class GoalAdapter extends ClassAdapter {
 				"$P4J_PROVER", "Lorg/prolog4j/Prover;", 
 				null, null);
 		for (int i = 0; i < goalVisitors.size(); ++i) {
-			AnnotationNode an = goalVisitors.get(i).goalAnnotation;
+			if (!isCached(goalVisitors.get(i).goalAnnotation)) {
+				continue;
+			}
 			visitField(ACC_PUBLIC + ACC_STATIC + ACC_FINAL, 
 					"$P4J_GOAL_" + i, "Lorg/prolog4j/Query;", 
 					null, null);
@@ -217,17 +344,16 @@ class GoalAdapter extends ClassAdapter {
 	private int insertStaticInitialization(MethodVisitor mv) {
 		int stack = 2;
 		mv.visitLdcInsn(className);
-		mv.visitMethodInsn(INVOKESTATIC, "org/prolog4j/ProverFactory", "getProver", "(Ljava/lang/String;)Lorg/prolog4j/Prover;");
+		mv.visitMethodInsn(INVOKESTATIC, "org/prolog4j/ProverFactory", "getProver", "(Ljava/lang/String;)Lorg/prolog4j/Prover;", false);
 		mv.visitFieldInsn(PUTSTATIC, classDesc, "$P4J_PROVER", "Lorg/prolog4j/Prover;");
 		if (theoryAnn != null) {
-			List values = theoryAnn.values;
-			Object val = values.get(1);
+			Object val = theoryAnn.getValue("value");
 			if (val instanceof String) {
 				mv.visitFieldInsn(GETSTATIC, classDesc, "$P4J_PROVER", "Lorg/prolog4j/Prover;");
 				mv.visitLdcInsn(val);
-				mv.visitMethodInsn(INVOKEINTERFACE, "org/prolog4j/Prover", "addTheory", "(Ljava/lang/String;)V");
+				mv.visitMethodInsn(INVOKEINTERFACE, "org/prolog4j/Prover", "addTheory", "(Ljava/lang/String;)V", true);
 			} else if (val instanceof List) {
-				List list = (List) val;
+				List<?> list = (List<?>) val;
 				mv.visitFieldInsn(GETSTATIC, classDesc, "$P4J_PROVER", "Lorg/prolog4j/Prover;");
 				int argNo = list.size();
 				if (argNo < 6) {
@@ -246,25 +372,20 @@ class GoalAdapter extends ClassAdapter {
 					mv.visitLdcInsn(list.get(i));
 					mv.visitInsn(AASTORE);
 				}
-				mv.visitMethodInsn(INVOKEINTERFACE, "org/prolog4j/Prover", "addTheory", "([Ljava/lang/String;)V");
+				mv.visitMethodInsn(INVOKEINTERFACE, "org/prolog4j/Prover", "addTheory", "([Ljava/lang/String;)V", true);
 				stack = 5;
 			}
 		}
 		for (int i = 0; i < goalVisitors.size(); ++i) {
-			AnnotationNode an = goalVisitors.get(i).goalAnnotation;
+			AnnotationValues an = goalVisitors.get(i).goalAnnotation;
+			if (!isCached(an)) {
+				continue;
+			}
 			mv.visitFieldInsn(GETSTATIC, classDesc, "$P4J_PROVER", "Lorg/prolog4j/Prover;");
-			mv.visitLdcInsn(getValue(an, "value"));
-			mv.visitMethodInsn(INVOKEINTERFACE, "org/prolog4j/Prover", "query", "(Ljava/lang/String;)Lorg/prolog4j/Query;");
+			mv.visitLdcInsn(an.getValue("value"));
+			mv.visitMethodInsn(INVOKEINTERFACE, "org/prolog4j/Prover", "prepare", "(Ljava/lang/String;)Lorg/prolog4j/PreparedQuery;", true);
 			mv.visitFieldInsn(PUTSTATIC, classDesc, "$P4J_GOAL_" + i, "Lorg/prolog4j/Query;");
 		}
 		return stack;
 	}
-
-	private Object getValue(AnnotationNode an, String name) {
-		Iterator iterator = an.values.iterator();
-		while (iterator.hasNext() && !iterator.next().equals(name)) {
-			iterator.next();
-		}
-		return iterator.hasNext() ? iterator.next() : null;
-	}
 }
@@ -0,0 +1,569 @@
+package org.prolog4j.apt;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.prolog4j.ConversionPolicy;
+import org.prolog4j.Prover;
+import org.prolog4j.Query;
+import org.prolog4j.Solution;
+import org.prolog4j.annotations.Bind;
+
+/**
+ * Links the <tt>invokedynamic</tt> call sites of the methods annotated with
+ * {@link org.prolog4j.annotations.Goal}. The target of a call site is a
+ * method handle specialized to the parameter and return types of the goal
+ * method. Primitive arguments are converted to terms by the conversion
+ * policy of the prover directly, and primitive results are read from the
+ * solution without boxing.
+ * <p>
+ * A goal method can also return a <tt>List</tt>, a <tt>Stream</tt> or an
+ * <tt>Optional</tt> of records or of classes whose fields are annotated with
+ * {@link Bind}. The method handle that creates such an element from a
+ * solution is composed once, when the call site is linked, so the values of
+ * the variables are read without reflection.
+ * <p>
+ * If the goal method has primitive parameters, the call site depends on the
+ * conversion policy of the prover, and it is relinked when the policy is
+ * replaced.
+ * <p>
+ * The class is used by the generated code, it is not meant to be used
+ * directly.
+ */
+public final class GoalBootstrap {
+
+	private static final MethodHandle QUERY_SOLVE;
+	private static final MethodHandle PROVER_SOLVE;
+	private static final MethodHandle SOLUTION_ON;
+	private static final MethodHandle SOLUTION_IS_SUCCESS;
+	private static final MethodHandle SOLUTION_GET;
+	private static final MethodHandle SOLUTION_GET_VARIABLE;
+	private static final MethodHandle SOLUTION_GET_TYPE;
+	private static final MethodHandle SOLUTION_GET_SLOT;
+	private static final MethodHandle SOLUTION_GET_SLOT_TYPE;
+	private static final MethodHandle IS_LINKED_WITH;
+	private static final MethodHandle RELINK;
+	private static final MethodHandle TO_LIST;
+	private static final MethodHandle TO_STREAM;
+	private static final MethodHandle TO_OPTIONAL;
+	static {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			QUERY_SOLVE = lookup.findVirtual(Query.class, "solve",
+					methodType(Solution.class, Object[].class));
+			PROVER_SOLVE = lookup.findVirtual(Prover.class, "solve",
+					methodType(Solution.class, String.class, Object[].class));
+			SOLUTION_ON = lookup.findVirtual(Solution.class, "on",
+					methodType(Solution.class, String.class));
+			SOLUTION_IS_SUCCESS = lookup.findVirtual(Solution.class, "isSuccess",
+					methodType(boolean.class));
+			SOLUTION_GET = lookup.findVirtual(Solution.class, "get",
+					methodType(Object.class));
+			SOLUTION_GET_VARIABLE = lookup.findVirtual(Solution.class, "get",
+					methodType(Object.class, String.class));
+			SOLUTION_GET_TYPE = lookup.findVirtual(Solution.class, "get",
+					methodType(Object.class, Class.class));
+			SOLUTION_GET_SLOT = lookup.findVirtual(Solution.class, "get",
+					methodType(Object.class, int.class));
+			SOLUTION_GET_SLOT_TYPE = lookup.findVirtual(Solution.class, "get",
+					methodType(Object.class, int.class, Class.class));
+			TO_LIST = lookup.findStatic(GoalBootstrap.class, "toList",
+					methodType(List.class, MethodHandle.class, String[].class, 
+							Solution.class));
+			TO_STREAM = lookup.findStatic(GoalBootstrap.class, "toStream",
+					methodType(Stream.class, MethodHandle.class, String[].class, 
+							Solution.class));
+			TO_OPTIONAL = lookup.findStatic(GoalBootstrap.class, "toOptional",
+					methodType(Optional.class, MethodHandle.class, String[].class, 
+							Solution.class));
+			IS_LINKED_WITH = lookup.findStatic(GoalBootstrap.class, "isLinkedWith",
+					methodType(boolean.class, Prover.class, ConversionPolicy.class));
+			RELINK = lookup.findVirtual(GoalCallSite.class, "relink",
+					methodType(Object.class, Object[].class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private GoalBootstrap() {
+	}
+
+	/**
+	 * The bootstrap method of the call sites of the goal methods.
+	 *
+	 * @param caller the lookup of the class of the goal method
+	 * @param name the name of the goal method
+	 * @param type the type of the goal method, without the receiver
+	 * @param goal the goal
+	 * @param goalIndex the index of the prepared query of the goal in the
+	 *            class, or -1 if the goal is not cached
+	 * @param outVar the variable whose value is returned, or an empty string
+	 * @return the call site
+	 * @throws ReflectiveOperationException if the fields generated for the
+	 *             class of the goal method cannot be read
+	 */
+	public static CallSite link(MethodHandles.Lookup caller, String name,
+			MethodType type, String goal, int goalIndex, String outVar)
+			throws ReflectiveOperationException {
+		Class<?> owner = caller.lookupClass();
+		Prover prover = (Prover) owner.getField("$P4J_PROVER").get(null);
+		Query query = goalIndex >= 0
+			? (Query) owner.getField("$P4J_GOAL_" + goalIndex).get(null) : null;
+		MethodHandle result = resultConverter(caller, name, type, outVar);
+		if (!hasPrimitiveParameter(type)) {
+			return new ConstantCallSite(
+					target(type, prover, query, goal, result, null));
+		}
+		return new GoalCallSite(type, prover, query, goal, result);
+	}
+
+	/**
+	 * A call site that depends on the conversion policy of the prover. The
+	 * target checks if the policy has been replaced, and if so, it relinks
+	 * the call site.
+	 */
+	private static final class GoalCallSite extends MutableCallSite {
+
+		private final Prover prover;
+		private final Query query;
+		private final String goal;
+		private final MethodHandle result;
+		private final MethodHandle fallback;
+
+		GoalCallSite(MethodType type, Prover prover, Query query, String goal,
+				MethodHandle result) {
+			super(type);
+			this.prover = prover;
+			this.query = query;
+			this.goal = goal;
+			this.result = result;
+			this.fallback = RELINK.bindTo(this)
+				.asCollector(Object[].class, type.parameterCount())
+				.asType(type);
+			link(prover.getConversionPolicy());
+		}
+
+		private MethodHandle link(ConversionPolicy policy) {
+			MethodHandle target = MethodHandles.guardWithTest(
+					MethodHandles.insertArguments(IS_LINKED_WITH, 0, prover, policy),
+					target(type(), prover, query, goal, result, policy),
+					fallback);
+			setTarget(target);
+			return target;
+		}
+
+		Object relink(Object[] args) throws Throwable {
+			return link(prover.getConversionPolicy()).invokeWithArguments(args);
+		}
+	}
+
+	@SuppressWarnings("unused")
+	private static boolean isLinkedWith(Prover prover, ConversionPolicy policy) {
+		return prover.getConversionPolicy() == policy;
+	}
+
+	private static boolean hasPrimitiveParameter(MethodType type) {
+		for (Class<?> parameterType : type.parameterList()) {
+			if (parameterType.isPrimitive()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Creates the method handle that solves the goal.
+	 *
+	 * @param result the method handle that produces the result from the 
+	 *            solution
+	 * @param policy the conversion policy that converts the primitive
+	 *            arguments, or <tt>null</tt> if there are no such arguments
+	 */
+	private static MethodHandle target(MethodType type, Prover prover,
+			Query query, String goal, MethodHandle result, ConversionPolicy policy) {
+		MethodHandle solve = query != null
+			? QUERY_SOLVE.bindTo(query)
+			: MethodHandles.insertArguments(PROVER_SOLVE, 0, prover, goal);
+		int argNo = type.parameterCount();
+		MethodHandle target = solve.asCollector(Object[].class, argNo);
+		if (policy != null) {
+			MethodHandle[] filters = new MethodHandle[argNo];
+			for (int i = 0; i < argNo; ++i) {
+				filters[i] = termConverter(type.parameterType(i), policy);
+			}
+			target = MethodHandles.filterArguments(target, 0, filters);
+		}
+		target = MethodHandles.filterReturnValue(target, result);
+		return target.asType(type);
+	}
+
+	/**
+	 * Returns the method handle that creates a term from a primitive value
+	 * of the given type, or <tt>null</tt> if the value is boxed instead.
+	 */
+	private static MethodHandle termConverter(Class<?> type, ConversionPolicy policy) {
+		Class<?> termType;
+		if (type == boolean.class || type == long.class
+				|| type == float.class || type == double.class) {
+			termType = type;
+		} else if (type == byte.class || type == short.class || type == int.class) {
+			termType = int.class;
+		} else {
+			return null;
+		}
+		try {
+			return MethodHandles.publicLookup().findVirtual(ConversionPolicy.class,
+					"term", methodType(Object.class, termType))
+				.bindTo(policy)
+				.asType(methodType(Object.class, type));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the method handle that produces the result of the goal method
+	 * from the solution.
+	 */
+	private static MethodHandle resultConverter(MethodHandles.Lookup caller,
+			String name, MethodType type, String outVar) 
+			throws ReflectiveOperationException {
+		Class<?> returnType = type.returnType();
+		boolean named = outVar.length() > 0;
+		if (returnType == List.class || returnType == Stream.class 
+				|| returnType == Optional.class) {
+			Class<?> elementType = elementType(
+					caller.lookupClass().getDeclaredMethod(name, type.parameterArray()));
+			List<String> variables = new ArrayList<String>();
+			MethodHandle extractor = extractor(caller, elementType, outVar, variables)
+				.asType(methodType(Object.class, Solution.class, int[].class));
+			MethodHandle collector = returnType == List.class ? TO_LIST
+				: returnType == Stream.class ? TO_STREAM : TO_OPTIONAL;
+			return MethodHandles.insertArguments(collector, 0, extractor, 
+					variables.toArray(new String[variables.size()]));
+		}
+		if (returnType == Solution.class) {
+			return named
+				? MethodHandles.insertArguments(SOLUTION_ON, 1, outVar)
+				: MethodHandles.identity(Solution.class);
+		}
+		if (returnType == boolean.class || returnType == Boolean.class) {
+			return SOLUTION_IS_SUCCESS;
+		}
+		if (returnType == void.class) {
+			return MethodHandles.identity(Solution.class);
+		}
+		String getter = null;
+		Class<?> getterType = null;
+		if (returnType == byte.class || returnType == short.class
+				|| returnType == int.class) {
+			getter = "getInt";
+			getterType = int.class;
+		} else if (returnType == long.class) {
+			getter = "getLong";
+			getterType = long.class;
+		} else if (returnType == float.class || returnType == double.class) {
+			getter = "getDouble";
+			getterType = double.class;
+		}
+		if (getter == null) {
+			return named
+				? MethodHandles.insertArguments(SOLUTION_GET_VARIABLE, 1, outVar)
+				: SOLUTION_GET;
+		}
+		try {
+			MethodHandle get = named
+				? MethodHandles.insertArguments(MethodHandles.publicLookup().findVirtual(
+						Solution.class, getter, methodType(getterType, String.class)),
+						1, outVar)
+				: MethodHandles.publicLookup().findVirtual(
+						Solution.class, getter, methodType(getterType));
+			// The narrowing conversions are not allowed by asType.
+			return MethodHandles.explicitCastArguments(get,
+					methodType(returnType, Solution.class));
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the element type of the <tt>List</tt>, <tt>Stream</tt> or 
+	 * <tt>Optional</tt> returned by the goal method.
+	 */
+	private static Class<?> elementType(Method method) {
+		java.lang.reflect.Type returnType = method.getGenericReturnType();
+		if (returnType instanceof ParameterizedType) {
+			java.lang.reflect.Type argument = 
+				((ParameterizedType) returnType).getActualTypeArguments()[0];
+			if (argument instanceof WildcardType) {
+				argument = ((WildcardType) argument).getUpperBounds()[0];
+			}
+			if (argument instanceof ParameterizedType) {
+				argument = ((ParameterizedType) argument).getRawType();
+			}
+			if (argument instanceof Class) {
+				return (Class<?>) argument;
+			}
+		}
+		return Object.class;
+	}
+
+	/**
+	 * Returns the method handle that creates an element of the result of a 
+	 * goal method from the current solution. If the element type is a 
+	 * record, its canonical constructor is called with the values of the 
+	 * variables of its components. If the element type has fields annotated
+	 * with {@link Bind}, it is instantiated by its no-arg constructor, and 
+	 * the values of the variables are stored in the fields. Otherwise the 
+	 * element is the value of the output variable.
+	 * <p>
+	 * The components of a record are bound to the variables named by their
+	 * {@link Bind} annotation, or by their name with the first letter 
+	 * capitalized.
+	 * <p>
+	 * The returned method handle has the type <tt>(Solution, int[])T</tt>. 
+	 * The variables are read by their slots, which are resolved once per 
+	 * query. The names of the variables are added to <tt>variables</tt>, and
+	 * the slot of a variable is taken from the array at the same index.
+	 */
+	private static MethodHandle extractor(MethodHandles.Lookup caller, 
+			Class<?> type, String outVar, List<String> variables) 
+			throws ReflectiveOperationException {
+		Object[] components = recordComponents(type);
+		if (components != null) {
+			int n = components.length;
+			Class<?>[] componentTypes = new Class<?>[n];
+			MethodHandle[] getters = new MethodHandle[n];
+			for (int i = 0; i < n; ++i) {
+				Object component = components[i];
+				String componentName = (String) component.getClass()
+					.getMethod("getName").invoke(component);
+				componentTypes[i] = (Class<?>) component.getClass()
+					.getMethod("getType").invoke(component);
+				Bind bind = ((AnnotatedElement) component).getAnnotation(Bind.class);
+				String variable = bind != null ? bind.value()
+					: Character.toUpperCase(componentName.charAt(0)) 
+						+ componentName.substring(1);
+				getters[i] = variableGetter(componentTypes[i], variable, variables);
+			}
+			MethodHandle constructor = lookupIn(type, caller).findConstructor(
+					type, methodType(void.class, componentTypes));
+			// All the getters read the same solution and slots.
+			int[] reorder = new int[2 * n];
+			for (int i = 1; i < reorder.length; i += 2) {
+				reorder[i] = 1;
+			}
+			for (int i = n - 1; i >= 0; --i) {
+				constructor = MethodHandles.collectArguments(constructor, i, getters[i]);
+			}
+			return MethodHandles.permuteArguments(constructor,
+					methodType(type, Solution.class, int[].class), reorder);
+		}
+		List<Field> fields = new ArrayList<Field>();
+		for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (!Modifier.isStatic(field.getModifiers()) 
+						&& field.isAnnotationPresent(Bind.class)) {
+					fields.add(field);
+				}
+			}
+		}
+		if (!fields.isEmpty()) {
+			// (T, Solution, int[])T, storing the values into the fields of T
+			MethodHandle fill = MethodHandles.dropArguments(
+					MethodHandles.identity(type), 1, Solution.class, int[].class);
+			for (Field field : fields) {
+				MethodHandle setter = lookupIn(field.getDeclaringClass(), caller)
+					.unreflectSetter(field);
+				setter = MethodHandles.collectArguments(setter, 1, variableGetter(
+						field.getType(), field.getAnnotation(Bind.class).value(), 
+						variables));
+				fill = MethodHandles.foldArguments(fill, setter.asType(
+						methodType(void.class, type, Solution.class, int[].class)));
+			}
+			return MethodHandles.foldArguments(fill, lookupIn(type, caller)
+					.findConstructor(type, methodType(void.class)));
+		}
+		if (outVar.length() > 0) {
+			return variableGetter(type, outVar, variables);
+		}
+		MethodHandle get = type == Object.class ? SOLUTION_GET
+			: MethodHandles.insertArguments(SOLUTION_GET_TYPE, 1, type)
+				.asType(methodType(type, Solution.class));
+		return MethodHandles.dropArguments(get, 1, int[].class);
+	}
+
+	/**
+	 * Returns the components of the given class if it is a record, otherwise
+	 * <tt>null</tt>. Records are looked up reflectively, so that the class 
+	 * can be used on Java versions that do not have them.
+	 */
+	private static Object[] recordComponents(Class<?> type) 
+			throws ReflectiveOperationException {
+		Method isRecord;
+		try {
+			isRecord = Class.class.getMethod("isRecord");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+		if (!(Boolean) isRecord.invoke(type)) {
+			return null;
+		}
+		return (Object[]) Class.class.getMethod("getRecordComponents").invoke(type);
+	}
+
+	/**
+	 * Returns a lookup that can access the private members of the given 
+	 * class if possible, otherwise the lookup of the goal method.
+	 */
+	private static MethodHandles.Lookup lookupIn(Class<?> type, 
+			MethodHandles.Lookup caller) {
+		try {
+			return MethodHandles.privateLookupIn(type, caller);
+		} catch (IllegalAccessException e) {
+			return caller;
+		}
+	}
+
+	/**
+	 * Returns the method handle that reads the value of a variable from the 
+	 * current solution as the given type, by its slot. Numbers are read 
+	 * without boxing. The type of the method handle is 
+	 * <tt>(Solution, int[])T</tt>, the slot of the variable is taken from the
+	 * array at the index of the variable in <tt>variables</tt>.
+	 */
+	private static MethodHandle variableGetter(Class<?> type, String variable, 
+			List<String> variables) throws ReflectiveOperationException {
+		int index = variables.indexOf(variable);
+		if (index == -1) {
+			index = variables.size();
+			variables.add(variable);
+		}
+		MethodHandle slot = MethodHandles.insertArguments(
+				MethodHandles.arrayElementGetter(int[].class), 1, index);
+		MethodHandle get;
+		String getter;
+		Class<?> getterType;
+		if (type == byte.class || type == short.class || type == int.class) {
+			getter = "getInt";
+			getterType = int.class;
+		} else if (type == long.class) {
+			getter = "getLong";
+			getterType = long.class;
+		} else if (type == float.class || type == double.class) {
+			getter = "getDouble";
+			getterType = double.class;
+		} else if (type == Object.class) {
+			return MethodHandles.filterArguments(SOLUTION_GET_SLOT, 1, slot);
+		} else {
+			get = MethodHandles.insertArguments(SOLUTION_GET_SLOT_TYPE, 2, 
+					MethodType.methodType(type).wrap().returnType())
+				.asType(methodType(type, Solution.class, int.class));
+			return MethodHandles.filterArguments(get, 1, slot);
+		}
+		get = MethodHandles.explicitCastArguments(
+				MethodHandles.publicLookup().findVirtual(Solution.class, getter, 
+						methodType(getterType, int.class)),
+				methodType(type, Solution.class, int.class));
+		return MethodHandles.filterArguments(get, 1, slot);
+	}
+
+	/**
+	 * Resolves the slots of the given variables in the solution.
+	 */
+	private static int[] slots(String[] variables, Solution<?> solution) {
+		int[] slots = new int[variables.length];
+		for (int i = 0; i < slots.length; ++i) {
+			slots[i] = solution.slotOf(variables[i]);
+		}
+		return slots;
+	}
+
+	private static Object extract(MethodHandle extractor, Solution<?> solution, 
+			int[] slots) {
+		try {
+			return (Object) extractor.invokeExact(solution, slots);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new UndeclaredThrowableException(e);
+		}
+	}
+
+	@SuppressWarnings("unused")
+	private static List<Object> toList(MethodHandle extractor, String[] variables,
+			Solution<?> solution) {
+		try {
+			List<Object> list = new ArrayList<Object>();
+			int[] slots = null;
+			while (solution.nextSolution()) {
+				if (slots == null) {
+					slots = slots(variables, solution);
+				}
+				list.add(extract(extractor, solution, slots));
+			}
+			return list;
+		} finally {
+			solution.close();
+		}
+	}
+
+	@SuppressWarnings("unused")
+	private static Stream<Object> toStream(final MethodHandle extractor, 
+			final String[] variables, final Solution<?> solution) {
+		Spliterator<Object> spliterator = new Spliterators.AbstractSpliterator<Object>(
+				Long.MAX_VALUE, Spliterator.ORDERED) {
+			private int[] slots;
+
+			@Override
+			public boolean tryAdvance(Consumer<? super Object> action) {
+				if (!solution.nextSolution()) {
+					return false;
+				}
+				if (slots == null) {
+					slots = slots(variables, solution);
+				}
+				action.accept(extract(extractor, solution, slots));
+				return true;
+			}
+		};
+		return StreamSupport.stream(spliterator, false).onClose(solution::close);
+	}
+
+	@SuppressWarnings("unused")
+	private static Optional<Object> toOptional(MethodHandle extractor, 
+			String[] variables, Solution<?> solution) {
+		try {
+			return solution.nextSolution() 
+				? Optional.ofNullable(extract(extractor, solution, 
+						slots(variables, solution))) 
+				: Optional.empty();
+		} finally {
+			solution.close();
+		}
+	}
+
+}
@@ -1,5 +1,7 @@
 package org.prolog4j.apt;
 
+import static org.objectweb.asm.Opcodes.ASM9;
+
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -7,23 +9,24 @@ import java.util.Map;
 import java.util.Set;
 
 import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.commons.EmptyVisitor;
-import org.objectweb.asm.tree.AnnotationNode;
 
 /**
  * The class explores a class for Prolog4J annotations and collects them.
  */
-class P4JAnnotationVisitor extends LazyClassVisitor {
+class P4JAnnotationVisitor extends ClassVisitor {
 
-	public final class GoalVisitor extends EmptyVisitor {
-		public AnnotationNode goalAnnotation;
-		public Map<Integer, AnnotationNode> bindAnnotations =
-			new HashMap<Integer, AnnotationNode>();
+	public final class GoalVisitor extends MethodVisitor {
+		public AnnotationValues goalAnnotation;
+		public Map<Integer, AnnotationValues> bindAnnotations =
+			new HashMap<Integer, AnnotationValues>();
 		private final String name;
 		private final String mDesc;
 
 		private GoalVisitor(String name, String mDesc) {
+			super(ASM9);
 			this.name = name;
 			this.mDesc = mDesc;
 		}
@@ -31,13 +34,13 @@ class P4JAnnotationVisitor extends LazyClassVisitor {
 		@Override
 		public AnnotationVisitor visitAnnotation(String aDesc, boolean visible) {
 			if (aDesc.equals("Lorg/prolog4j/annotations/Goal;")) {
-				goalAnnotation = new AnnotationNode(aDesc);
+				goalAnnotation = new AnnotationValues();
 				goalMethods.add(name + mDesc);
 				goalVisitors.add(this);
 				return goalAnnotation;
 			}
 			else if (aDesc.equals("Lorg/prolog4j/annotations/Bind;")) {
-				AnnotationNode an = new AnnotationNode(aDesc);
+				AnnotationValues an = new AnnotationValues();
 				bindAnnotations.put(-1, an);
 				return an;
 			}
@@ -50,7 +53,7 @@ class P4JAnnotationVisitor extends LazyClassVisitor {
 				return null;
 			}
 			if (aDesc.equals("Lorg/prolog4j/annotations/In;")) {
-				AnnotationNode an = new AnnotationNode(aDesc);
+				AnnotationValues an = new AnnotationValues();
 				bindAnnotations.put(parameter, an);
 				return an;
 			}
@@ -58,15 +61,30 @@ class P4JAnnotationVisitor extends LazyClassVisitor {
 		}
 	}
 
-	AnnotationNode theoryAnn;
+	AnnotationValues theoryAnn;
+	/** Tells if the class has already been processed by {@link GoalAdapter}. */
+	boolean woven;
 	Set<String> goalMethods = new HashSet<String>();
 	LinkedList<GoalVisitor> goalVisitors = new LinkedList<GoalVisitor>();
+
+	P4JAnnotationVisitor() {
+		super(ASM9);
+	}
 	
 	@Override
 	public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
 		if (desc.equals("Lorg/prolog4j/annotations/Theory;")) {
 //			return new TheoryVisitor(className);
-			return theoryAnn = new AnnotationNode(desc);
+			return theoryAnn = new AnnotationValues();
+		}
+		return null;
+	}
+	
+	@Override
+	public FieldVisitor visitField(int access, String name, String desc,
+			String signature, Object value) {
+		if (name.equals("$P4J_PROVER")) {
+			woven = true;
 		}
 		return null;
 	}
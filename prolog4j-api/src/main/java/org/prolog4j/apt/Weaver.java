@@ -0,0 +1,301 @@
+package org.prolog4j.apt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * Generates the bodies of the methods annotated with
+ * {@link org.prolog4j.annotations.Goal} and the static initialization of the
+ * classes that have such methods or {@link org.prolog4j.annotations.Theory}
+ * annotation.
+ * <p>
+ * The weaver is used by the {@link Bootstrap Java agent} at class loading
+ * time, but it can also be run on the compiled classes at build time, so
+ * that the application can be started without the agent. In this case the
+ * class files are rewritten in place:
+ * <pre>
+ * java org.prolog4j.apt.Weaver target/classes
+ * </pre>
+ * With Maven it can be run in the <tt>process-classes</tt> phase by the
+ * <tt>maven-antrun-plugin</tt>:
+ * <pre>
+ * &lt;java classname="org.prolog4j.apt.Weaver"
+ *       classpathref="maven.compile.classpath" failonerror="true"&gt;
+ *   &lt;arg value="${project.build.outputDirectory}" /&gt;
+ * &lt;/java&gt;
+ * </pre>
+ * The names of the woven classes are written into the {@link #INDEX} 
+ * resource. Classes that have already been woven are recognized by the 
+ * <tt>$P4J_PROVER</tt> field and left intact, so it is safe to run the agent
+ * on woven classes.
+ */
+public class Weaver {
+
+	/**
+	 * The resource that lists the internal names of the classes woven at 
+	 * build time, one per line. It is rewritten into the weaved directory at
+	 * every run. The agent checks only that the listed classes are still 
+	 * woven, without parsing them, since a class may have been recompiled
+	 * after the weaving, e.g. by an IDE.
+	 */
+	public static final String INDEX = "META-INF/prolog4j/woven-classes";
+
+	/** The common prefix of the descriptors of the Prolog4J annotations. */
+	private static final byte[] ANNOTATION_PREFIX = 
+		"Lorg/prolog4j/annotations/".getBytes(StandardCharsets.UTF_8);
+
+	/** The name of the field that is added to the woven classes. */
+	private static final byte[] WOVEN_MARKER = 
+		"$P4J_PROVER".getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * Weaves the given class.
+	 *
+	 * @param className the internal name of the class
+	 * @param classfile the content of the class file
+	 * @return the content of the woven class file, or <tt>null</tt> if the
+	 *         class has no Prolog4J annotations or it has already been woven
+	 */
+	public byte[] weave(String className, byte[] classfile) {
+		return weave(className, classfile, null);
+	}
+
+	private byte[] weave(String className, byte[] classfile, Set<String> index) {
+		if (!refersToAnnotations(classfile)) {
+			return null;
+		}
+		if (isWoven(classfile)) {
+			if (index != null) {
+				index.add(className);
+			}
+			return null;
+		}
+		ClassReader cr = new ClassReader(classfile);
+		P4JAnnotationVisitor p4jVisitor = new P4JAnnotationVisitor();
+		cr.accept(p4jVisitor, 0);
+		if (p4jVisitor.goalMethods.isEmpty() && p4jVisitor.theoryAnn == null) {
+			return null;
+		}
+		if (index != null) {
+			index.add(className);
+		}
+		if (p4jVisitor.woven) {
+			return null;
+		}
+		ClassWriter cw = new ClassWriter(cr, 0);
+		cr.accept(new GoalAdapter(cw, className, p4jVisitor), 0);
+		return cw.toByteArray();
+	}
+
+	/**
+	 * Tells if the constant pool of the class contains the descriptor of a
+	 * Prolog4J annotation. The constant pool is scanned without parsing the
+	 * class, so that the classes that are surely not to be woven can be 
+	 * skipped cheaply.
+	 * 
+	 * @param classfile the content of the class file
+	 * @return <tt>false</tt> if the class surely has no Prolog4J annotations
+	 */
+	static boolean refersToAnnotations(byte[] classfile) {
+		return containsConstant(classfile, ANNOTATION_PREFIX, false);
+	}
+
+	/**
+	 * Tells if the class has been woven, that is, the constant pool of the 
+	 * class contains the name of the <tt>$P4J_PROVER</tt> field.
+	 * 
+	 * @param classfile the content of the class file
+	 * @return <tt>true</tt> if the class has been woven
+	 */
+	static boolean isWoven(byte[] classfile) {
+		return containsConstant(classfile, WOVEN_MARKER, true);
+	}
+
+	/**
+	 * Scans the constant pool of the class for a Utf8 constant.
+	 * 
+	 * @param classfile the content of the class file
+	 * @param value the value or the prefix of the constant
+	 * @param exact whether the constant has to be equal to <tt>value</tt>, 
+	 *        not only start with it
+	 * @return <tt>true</tt> if the constant has been found, or the constant
+	 *         pool cannot be scanned
+	 */
+	private static boolean containsConstant(byte[] classfile, byte[] value, 
+			boolean exact) {
+		int count = readUnsignedShort(classfile, 8);
+		int offset = 10;
+		for (int i = 1; i < count; ++i) {
+			int tag = classfile[offset];
+			switch (tag) {
+			case 1: // Utf8
+				int length = readUnsignedShort(classfile, offset + 1);
+				if ((!exact || length == value.length) 
+						&& startsWith(classfile, offset + 3, length, value)) {
+					return true;
+				}
+				offset += 3 + length;
+				break;
+			case 7: // Class
+			case 8: // String
+			case 16: // MethodType
+			case 19: // Module
+			case 20: // Package
+				offset += 3;
+				break;
+			case 15: // MethodHandle
+				offset += 4;
+				break;
+			case 3: // Integer
+			case 4: // Float
+			case 9: // Fieldref
+			case 10: // Methodref
+			case 11: // InterfaceMethodref
+			case 12: // NameAndType
+			case 17: // Dynamic
+			case 18: // InvokeDynamic
+				offset += 5;
+				break;
+			case 5: // Long
+			case 6: // Double
+				offset += 9;
+				++i;
+				break;
+			default:
+				// Unknown constant pool entry, the class is parsed fully.
+				return !exact;
+			}
+		}
+		return false;
+	}
+
+	private static int readUnsignedShort(byte[] b, int offset) {
+		return ((b[offset] & 0xFF) << 8) | (b[offset + 1] & 0xFF);
+	}
+
+	private static boolean startsWith(byte[] b, int offset, int length, byte[] prefix) {
+		if (length < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; ++i) {
+			if (b[offset + i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Weaves the class files in the given directory and its subdirectories,
+	 * in place.
+	 *
+	 * @param classesDir the root directory of the class files (that is, the
+	 *            one that contains the directory of the default package)
+	 * @return the number of the woven classes
+	 * @throws IOException if a class file cannot be read or written
+	 */
+	public int weave(File classesDir) throws IOException {
+		Set<String> index = new TreeSet<String>();
+		int woven = weave(classesDir, "", index);
+		File indexFile = new File(classesDir, INDEX);
+		if (index.isEmpty()) {
+			if (indexFile.exists() && !indexFile.delete()) {
+				throw new IOException("Cannot delete " + indexFile);
+			}
+		} else {
+			indexFile.getParentFile().mkdirs();
+			StringBuilder sb = new StringBuilder();
+			for (String className : index) {
+				sb.append(className).append('\n');
+			}
+			write(indexFile, sb.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		return woven;
+	}
+
+	private int weave(File dir, String packagePrefix, Set<String> index) 
+			throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			throw new IOException("Not a directory: " + dir);
+		}
+		int woven = 0;
+		for (File file : files) {
+			String name = file.getName();
+			if (file.isDirectory()) {
+				woven += weave(file, packagePrefix + name + '/', index);
+			} else if (name.endsWith(".class")) {
+				String className = packagePrefix
+						+ name.substring(0, name.length() - ".class".length());
+				byte[] classfile;
+				try {
+					classfile = weave(className, read(file), index);
+				} catch (RuntimeException e) {
+					// The class file format is not supported by the ASM version
+					// in use. Such a class is not transformed by the agent either.
+					System.err.println("Prolog4J: " + file + " cannot be read, skipped");
+					continue;
+				}
+				if (classfile != null) {
+					write(file, classfile);
+					++woven;
+				}
+			}
+		}
+		return woven;
+	}
+
+	private static byte[] read(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void write(File file, byte[] content) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Weaves the class files in the directories given as arguments, in place.
+	 *
+	 * @param args the root directories of the class files
+	 * @throws IOException if a class file cannot be read or written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: java org.prolog4j.apt.Weaver <classes directory>...");
+			System.exit(1);
+		}
+		Weaver weaver = new Weaver();
+		for (String dir : args) {
+			int woven = weaver.weave(new File(dir));
+			System.out.println("Prolog4J: " + woven + " class(es) woven in " + dir);
+		}
+	}
+
+}
@@ -0,0 +1,190 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.bench;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.prolog4j.Compound;
+import org.prolog4j.ConversionPolicy;
+
+/**
+ * Measures the conversions between Java objects and terms performed by the
+ * {@link ConversionPolicy} of a prover. These conversions are performed for
+ * every actual argument of a query and for every value read from a solution.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionBenchmark {
+
+	/** The conversion policy under test. */
+	private ConversionPolicy cp;
+
+	/** An integer object. */
+	private Integer intObject;
+
+	/** A string object. */
+	private String stringObject;
+
+	/** A list object. */
+	private List<Object> listObject;
+
+	/** A compound object. */
+	private Compound compoundObject;
+
+	/** The term representation of {@link #intObject}. */
+	private Object intTerm;
+
+	/** The term representation of {@link #stringObject}. */
+	private Object atomTerm;
+
+	/** The term representation of {@link #listObject}. */
+	private Object listTerm;
+
+	/** The term representation of {@link #compoundObject}. */
+	private Object compoundTerm;
+
+	/**
+	 * Creates the objects and their term representations.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		cp = Theories.createProver(0).getConversionPolicy();
+		intObject = 42;
+		stringObject = "socrates";
+		listObject = Arrays.<Object>asList(0, 1, 2, "a", "b", "c");
+		compoundObject = new Compound("human", "socrates", 70);
+		intTerm = cp.convertObject(intObject);
+		atomTerm = cp.convertObject(stringObject);
+		listTerm = cp.convertObject(listObject);
+		compoundTerm = cp.convertObject(compoundObject);
+	}
+
+	/**
+	 * Converts an integer to a term.
+	 * 
+	 * @return the term
+	 */
+	@Benchmark
+	public Object convertIntObject() {
+		return cp.convertObject(intObject);
+	}
+
+	/**
+	 * Converts a string to a term.
+	 * 
+	 * @return the term
+	 */
+	@Benchmark
+	public Object convertStringObject() {
+		return cp.convertObject(stringObject);
+	}
+
+	/**
+	 * Converts a list to a term.
+	 * 
+	 * @return the term
+	 */
+	@Benchmark
+	public Object convertListObject() {
+		return cp.convertObject(listObject);
+	}
+
+	/**
+	 * Converts a compound to a term.
+	 * 
+	 * @return the term
+	 */
+	@Benchmark
+	public Object convertCompoundObject() {
+		return cp.convertObject(compoundObject);
+	}
+
+	/**
+	 * Converts an integer term to an object.
+	 * 
+	 * @return the object
+	 */
+	@Benchmark
+	public Object convertIntTerm() {
+		return cp.convertTerm(intTerm);
+	}
+
+	/**
+	 * Converts an atom to an object.
+	 * 
+	 * @return the object
+	 */
+	@Benchmark
+	public Object convertAtomTerm() {
+		return cp.convertTerm(atomTerm);
+	}
+
+	/**
+	 * Converts a list term to an object.
+	 * 
+	 * @return the object
+	 */
+	@Benchmark
+	public Object convertListTerm() {
+		return cp.convertTerm(listTerm);
+	}
+
+	/**
+	 * Converts a list term to an array.
+	 * 
+	 * @return the object
+	 */
+	@Benchmark
+	public Object[] convertListTermToArray() {
+		return cp.convertTerm(listTerm, Object[].class);
+	}
+
+	/**
+	 * Converts a compound term to an object.
+	 * 
+	 * @return the object
+	 */
+	@Benchmark
+	public Object convertCompoundTerm() {
+		return cp.convertTerm(compoundTerm);
+	}
+
+}
@@ -0,0 +1,143 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.prolog4j.Prover;
+import org.prolog4j.Query;
+import org.prolog4j.Solution;
+import org.prolog4j.SolutionIterator;
+
+/**
+ * Measures traversing the solutions of a goal with many solutions. Every
+ * invocation enumerates {@link #SOLUTIONS} solutions, so the reported scores
+ * are per solution.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IterationBenchmark {
+
+	/** The number of solutions enumerated by one invocation. */
+	static final int SOLUTIONS = 1000;
+
+	/** The prover under test. */
+	private Prover prover;
+
+	/** The query that enumerates the fact base. */
+	private Query factQuery;
+
+	/** A list of integers used as an argument of member/2. */
+	private List<Integer> numbers;
+
+	/**
+	 * Creates the prover and the query.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		prover = Theories.createProver(SOLUTIONS);
+		factQuery = prover.query("fact(X, Y).");
+		numbers = new ArrayList<Integer>(SOLUTIONS);
+		for (int i = 0; i < SOLUTIONS; ++i) {
+			numbers.add(i);
+		}
+	}
+
+	/**
+	 * Traverses the solutions by {@link Solution#iterator()}, accessing the
+	 * default output variable only.
+	 * 
+	 * @param bh consumes the values
+	 */
+	@Benchmark
+	@OperationsPerInvocation(SOLUTIONS)
+	public void iterate(Blackhole bh) {
+		Solution<Object> solution = factQuery.solve();
+		for (Object value: solution) {
+			bh.consume(value);
+		}
+	}
+
+	/**
+	 * Traverses the solutions by {@link Solution#iterator()}, accessing
+	 * another variable as well.
+	 * 
+	 * @param bh consumes the values
+	 */
+	@Benchmark
+	@OperationsPerInvocation(SOLUTIONS)
+	public void iterateTwoVariables(Blackhole bh) {
+		Solution<Object> solution = factQuery.solve();
+		SolutionIterator<Object> it = solution.on("Y").iterator();
+		while (it.hasNext()) {
+			bh.consume(it.next());
+			bh.consume(it.get("X"));
+		}
+	}
+
+	/**
+	 * Collects the solutions by {@link Solution#toList()}.
+	 * 
+	 * @return the list of the solutions
+	 */
+	@Benchmark
+	@OperationsPerInvocation(SOLUTIONS)
+	public List<Object> toList() {
+		return factQuery.solve().toList();
+	}
+
+	/**
+	 * Traverses the solutions of member/2 on a list given as argument, which
+	 * includes converting the list to a term.
+	 * 
+	 * @param bh consumes the values
+	 */
+	@Benchmark
+	@OperationsPerInvocation(SOLUTIONS)
+	public void iterateMember(Blackhole bh) {
+		for (Object value: prover.solve("member(X, ?).", numbers)) {
+			bh.consume(value);
+		}
+	}
+
+}
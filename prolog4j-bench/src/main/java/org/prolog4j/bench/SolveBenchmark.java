@@ -0,0 +1,165 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.prolog4j.Prover;
+import org.prolog4j.Query;
+
+/**
+ * Measures the throughput of solving goals through {@link Prover#solve} and
+ * {@link Query#solve}. Only the first solution is requested, so these figures
+ * mostly reflect the cost of parsing, argument conversion and the first
+ * resolution step.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolveBenchmark {
+
+	/** The number of argument tuples solved by the batch benchmarks. */
+	private static final int BATCH = 100;
+
+	/** The number of <tt>fact/2</tt> facts in the knowledge base. */
+	@Param({"10", "1000", "100000"})
+	public int facts;
+
+	/** The prover under test. */
+	private Prover prover;
+
+	/** A precompiled query for the member/2 predicate. */
+	private Query memberQuery;
+
+	/** A precompiled query for the fact/2 predicate. */
+	private Query factQuery;
+
+	/** A list of atoms used as an argument of member/2. */
+	private List<String> philosophers;
+
+	/** The key looked up in the fact base. */
+	private int key;
+
+	/** The argument tuples of the batch benchmarks. */
+	private List<Object[]> keys;
+
+	/**
+	 * Creates the prover and the queries.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		prover = Theories.createProver(facts);
+		memberQuery = prover.query("member(?, ?).");
+		factQuery = prover.query("fact(?, X).");
+		philosophers = Arrays.asList("thales", "socrates", "plato", "aristotle");
+		key = facts / 2;
+		keys = new ArrayList<Object[]>(BATCH);
+		for (int i = 0; i < BATCH; ++i) {
+			keys.add(new Object[]{i * facts / BATCH});
+		}
+	}
+
+	/**
+	 * Solves a ground goal without arguments.
+	 * 
+	 * @return whether the goal is satisfiable
+	 */
+	@Benchmark
+	public boolean proverSolveGround() {
+		return prover.solve("mortal(socrates).").isSuccess();
+	}
+
+	/**
+	 * Solves a goal with placeholders, which includes parsing it.
+	 * 
+	 * @return whether the goal is satisfiable
+	 */
+	@Benchmark
+	public boolean proverSolveMember() {
+		return prover.solve("member(?, ?List).", "plato", philosophers).isSuccess();
+	}
+
+	/**
+	 * Solves a goal with placeholders and converts an output list.
+	 * 
+	 * @return the value of the output variable
+	 */
+	@Benchmark
+	public Object proverSolveAppend() {
+		return prover.solve("append(?L1, ?L2, L12).", philosophers, philosophers)
+				.get("L12");
+	}
+
+	/**
+	 * Solves a precompiled query with placeholders.
+	 * 
+	 * @return whether the goal is satisfiable
+	 */
+	@Benchmark
+	public boolean querySolveMember() {
+		return memberQuery.solve("plato", philosophers).isSuccess();
+	}
+
+	/**
+	 * Looks up a fact in the fact base through a precompiled query.
+	 * 
+	 * @return the value bound to the output variable
+	 */
+	@Benchmark
+	public Object querySolveFact() {
+		return factQuery.solve(key).get("X");
+	}
+
+	/**
+	 * Looks up a batch of facts in the fact base, one solve per key.
+	 * 
+	 * @return the keys found
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public BitSet querySolveAllFacts() {
+		return factQuery.solveAll(keys);
+	}
+
+}
@@ -0,0 +1,73 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.bench;
+
+import org.prolog4j.Prover;
+import org.prolog4j.ProverFactory;
+
+/**
+ * Creates the provers used by the benchmarks. The theory is the same as the
+ * one used by <tt>ProverTest</tt> (member, append, mortal), extended with a
+ * fact base of configurable size.
+ */
+final class Theories {
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private Theories() {
+	}
+
+	/**
+	 * Creates a new prover through {@link ProverFactory#getProver()} and loads
+	 * the common theory and <tt>facts</tt> number of <tt>fact/2</tt> facts into
+	 * it. The first argument of the facts is an integer from <tt>0</tt> to
+	 * <tt>facts - 1</tt>, the second one is an atom.
+	 * 
+	 * @param facts the number of facts to add
+	 * @return the prover
+	 */
+	static Prover createProver(int facts) {
+		Prover p = ProverFactory.getProver();
+		p.addTheory(
+				"member(X, [X|_]).",
+				"member(X, [_|L]) :- member(X, L).",
+				"append([], R, R).",
+				"append([H|T], L, [H|R]) :-" +
+				"    append(T, L, R).");
+		p.addTheory(
+				"mortal(X) :- human(X).",
+				"human(socrates).",
+				"human(plato).");
+		if (facts > 0) {
+			String[] theory = new String[facts];
+			for (int i = 0; i < facts; ++i) {
+				theory[i] = "fact(" + i + ", a" + i + ").";
+			}
+			p.addTheory(theory);
+		}
+		return p;
+	}
+
+}
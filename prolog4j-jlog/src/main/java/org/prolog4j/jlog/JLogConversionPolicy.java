@@ -76,6 +76,11 @@ public class JLogConversionPolicy extends ConversionPolicy {
 //		jprologAPI = null;
 	}
 	
+	/** The <tt>true</tt> atom. */
+	private static final jAtom TRUE = new jAtom("true");
+	/** The <tt>false</tt> atom. */
+	private static final jAtom FALSE = new jAtom("false");
+
 	/** Converts an Integer object to a term. */
 	private static final Converter<Integer> INTEGER_CONVERTER = new Converter<Integer>() {
 		@Override
@@ -281,11 +286,26 @@ public class JLogConversionPolicy extends ConversionPolicy {
 		return new jInteger(value);
 	}
 
+	@Override
+	public Object term(long value) {
+		return new jInteger((int) value);
+	}
+
+	@Override
+	public Object term(float value) {
+		return new jReal(value);
+	}
+
 	@Override
 	public Object term(double value) {
 		return new jReal((float) value);
 	}
 
+	@Override
+	public Object term(boolean value) {
+		return value ? TRUE : FALSE;
+	}
+
 	@Override
 	public Object term(String name) {
 		pParseStream parser = prologAPI.getParser(name + ".");
@@ -337,11 +357,22 @@ public class JLogConversionPolicy extends ConversionPolicy {
 
 	@Override
 	public int intValue(Object term) {
+		if (term instanceof jReal) {
+			return (int) ((jReal) term).getRealValue();
+		}
 		return ((jInteger) term).getIntegerValue();
 	}
 
+	@Override
+	public long longValue(Object term) {
+		return intValue(term);
+	}
+
 	@Override
 	public double doubleValue(Object term) {
+		if (term instanceof jInteger) {
+			return ((jInteger) term).getIntegerValue();
+		}
 		return ((jReal) term).getRealValue();
 	}
 
@@ -0,0 +1,68 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.jlog;
+
+import java.util.Hashtable;
+import java.util.List;
+
+import org.prolog4j.ConversionPolicy;
+import org.prolog4j.PreparedQuery;
+import org.prolog4j.Prover;
+import org.prolog4j.Solution;
+
+/**
+ * The JLog implementation of the PreparedQuery class. JLog parses the goal
+ * when solving it, so only the placeholders are processed in advance. The 
+ * initial bindings of the variables are created for each invocation.
+ */
+public class JLogPreparedQuery extends PreparedQuery {
+
+	/** The names of the placeholder variables of the goal. */
+	private final String[] placeholderNames;
+
+	/**
+	 * Creates a JLog prepared query object.
+	 * 
+	 * @param prover the JLog prover that prepares the query
+	 * @param goal the Prolog goal
+	 */
+	JLogPreparedQuery(JLogProver prover, String goal) {
+		super(prover, goal);
+		List<String> names = getPlaceholderNames();
+		placeholderNames = names.toArray(new String[names.size()]);
+	}
+
+	@Override
+	public <A> Solution<A> solve(Prover prover, Object... actualArgs) {
+		JLogProver jlProver = (JLogProver) prover;
+		ConversionPolicy cp = jlProver.getConversionPolicy();
+		Hashtable<String, Object> bindings = 
+			new Hashtable<String, Object>(placeholderNames.length);
+		for (int i = 0; i < placeholderNames.length; ++i) {
+			bindings.put(placeholderNames[i], cp.convertObject(actualArgs[i]));
+		}
+		return new JLogSolution<A>(jlProver, getGoal(), bindings, this);
+	}
+
+}
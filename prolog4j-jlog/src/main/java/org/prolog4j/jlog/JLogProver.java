@@ -27,11 +27,19 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.time.Duration;
+import java.util.Hashtable;
+import java.util.function.Supplier;
 
 import org.prolog4j.AbstractProver;
+import org.prolog4j.ClauseReader;
+import org.prolog4j.PreparedQuery;
 import org.prolog4j.Query;
 
+import ubc.cs.JLog.Foundation.jAPIQueryThread;
 import ubc.cs.JLog.Foundation.jPrologAPI;
+import ubc.cs.JLog.Parser.pParseStream;
 import ubc.cs.JLog.Terms.iObjectToTerm;
 import ubc.cs.JLog.Terms.iTermToObject;
 import ubc.cs.JLog.Terms.jTerm;
@@ -50,7 +58,13 @@ public class JLogProver extends AbstractProver {
 	 * The JLog engine that is used for storing the knowledge base and 
 	 * solving queries on it.
 	 */
-	private final transient jPrologAPI engine;
+	private final transient Engine engine;
+
+	/**
+	 * The solution whose alternatives are open in the engine, or 
+	 * <tt>null</tt>. Only this solution is allowed to release them.
+	 */
+	private transient Object openSolution;
 
 	/**
 	 * Performs no translation at all. For terms it returns the original term as
@@ -77,12 +91,147 @@ public class JLogProver extends AbstractProver {
 		});
 	}
 
+	/**
+	 * The JLog engine. It gives access to the method that terminates the
+	 * pending query and waits for its thread to finish. (<tt>stop()</tt> does
+	 * not wait for it, and a query started afterwards would hang.)
+	 */
+	private static final class Engine extends jPrologAPI {
+
+		/**
+		 * Creates an engine with an empty knowledge base.
+		 */
+		Engine() {
+			super("");
+		}
+
+		/**
+		 * Terminates the pending query, if any. Unlike 
+		 * <tt>joinForcedQueryCompletion()</tt>, it does not hold the lock of
+		 * the engine while waiting for the thread of the query, since the
+		 * thread of a halted query may need the lock to report its result.
+		 */
+		void release() {
+			jAPIQueryThread pending;
+			synchronized (this) {
+				pending = thread;
+				if (pending == null || !pending.isAlive()) {
+					joinForcedQueryCompletion();
+					return;
+				}
+				query_state = QUERY_STATE_FINISHED;
+				pending.broadcasted_stop();
+			}
+			boolean interrupted = false;
+			while (pending.isAlive()) {
+				try {
+					pending.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			joinForcedQueryCompletion();
+		}
+
+		/**
+		 * Terminates the pending query, if any, and starts a new one.
+		 * 
+		 * @param query the goal to solve
+		 * @param bindings the initial bindings of the variables
+		 * @return the bindings of the first solution, or <tt>null</tt>
+		 */
+		@Override
+		public Hashtable query(String query, Hashtable bindings) {
+			release();
+			return super.query(query, bindings);
+		}
+
+		/**
+		 * Stops the pending query, if any. <tt>stop()</tt> marks the query
+		 * as finished, but it does not wake up the thread waiting for its
+		 * result.
+		 */
+		synchronized void halt() {
+			stop();
+			notifyAll();
+		}
+
+		/**
+		 * Consults a Prolog text read from the given source. Unlike 
+		 * <tt>consultSource(String)</tt>, it parses the text while reading it,
+		 * in the calling thread.
+		 * 
+		 * @param source the source to read the text from
+		 */
+		void consult(Reader source) {
+			release();
+			synchronized (this) {
+				pParseStream parser = new pParseStream(source, 
+						prolog.getKnowledgeBase(), 
+						prolog.getPredicateRegistry(), 
+						prolog.getOperatorRegistry());
+				parser.parseSource();
+				prolog.getKnowledgeBase().consult();
+			}
+		}
+
+	}
+
+	/**
+	 * Supplies the text of the clauses read by a clause reader as a character
+	 * stream.
+	 */
+	private static final class ClauseSource extends Reader {
+
+		/** The clause reader to read the clauses from. */
+		private final ClauseReader clauses;
+
+		/** The text of the current clause. */
+		private String clause = "";
+
+		/** The position of the next character in the current clause. */
+		private int position;
+
+		/**
+		 * Creates a source.
+		 * 
+		 * @param clauses the clause reader to read the clauses from
+		 */
+		ClauseSource(ClauseReader clauses) {
+			this.clauses = clauses;
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			while (position == clause.length()) {
+				String next = clauses.readClause();
+				if (next == null) {
+					return -1;
+				}
+				clause = next + '\n';
+				position = 0;
+			}
+			int n = Math.min(length, clause.length() - position);
+			clause.getChars(position, position + n, buffer, offset);
+			position += n;
+			return n;
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
 	/**
 	 * Creates a JLog prover.
 	 */
 	JLogProver() {
 		super();
-		engine = new jPrologAPI("");
+		engine = new Engine();
 		engine.setTranslation(IDEMPOTENT_TRANSLATION);
 	}
 
@@ -94,9 +243,70 @@ public class JLogProver extends AbstractProver {
 		return engine;
 	}
 
+	/**
+	 * Registers the solution whose alternatives are open in the engine.
+	 * 
+	 * @param solution the most recent solution
+	 */
+	void setOpenSolution(Object solution) {
+		openSolution = solution;
+	}
+
+	/**
+	 * Tells whether the alternatives open in the engine belong to the given
+	 * solution. If so, the solution is unregistered.
+	 * 
+	 * @param solution the solution to check
+	 * @return <tt>true</tt> if the alternatives belong to the solution
+	 */
+	private boolean releaseOpenSolution(Object solution) {
+		if (openSolution != solution) {
+			return false;
+		}
+		openSolution = null;
+		return true;
+	}
+
+	/**
+	 * Terminates the pending query of the engine if it belongs to the given
+	 * solution.
+	 * 
+	 * @param solution the solution that does not need further alternatives
+	 */
+	void release(Object solution) {
+		if (releaseOpenSolution(solution)) {
+			engine.release();
+		}
+	}
+
 	@Override
 	public Query query(String goal) {
-		return new JLogQuery(this, goal);
+		long start = parseStart();
+		return parsed(new JLogQuery(this, goal), start);
+	}
+
+	@Override
+	public PreparedQuery prepare(String goal) {
+		long start = parseStart();
+		return parsed(new JLogPreparedQuery(this, goal), start);
+	}
+
+	/**
+	 * Stops the query running in the engine. The query returns as if it had
+	 * no solution.
+	 */
+	@Override
+	protected void halt() {
+		engine.halt();
+	}
+
+	/**
+	 * {@inheritDoc} Overridden to be accessible to the solutions.
+	 */
+	@Override
+	protected <T> T solveWithin(Object goal, Duration timeout, 
+			Supplier<T> engineCall) {
+		return super.solveWithin(goal, timeout, engineCall);
 	}
 
 	@Override
@@ -106,18 +316,32 @@ public class JLogProver extends AbstractProver {
 
 	@Override
 	public void loadTheory(InputStream input) throws IOException {
-		StringBuilder sb = new StringBuilder();
-		BufferedReader br = new BufferedReader(new InputStreamReader(input));
-		String line;
-		while ((line = br.readLine()) != null) {
-			sb.append(line).append('\n');
+		try {
+			engine.consult(new BufferedReader(new InputStreamReader(input)));
+		} finally {
+			theoryModified();
 		}
-		engine.consultSource(sb.toString());
+	}
+
+	/**
+	 * Consulting replaces the predicates of the consulted text in JLog, so the
+	 * clauses are not loaded in batches, but in one go. They are still parsed
+	 * while they are read.
+	 * 
+	 * @param clauses the clauses to load
+	 */
+	@Override
+	protected void loadClauses(ClauseReader clauses) {
+		engine.consult(new ClauseSource(clauses));
 	}
 
 	@Override
 	public void addTheory(String theory) {
-		engine.consultSource(theory);
+		try {
+			engine.consultSource(theory);
+		} finally {
+			clausesModified(theory);
+		}
 	}
 
 	@Override
@@ -126,7 +350,11 @@ public class JLogProver extends AbstractProver {
 		for (String factOrRule : theory) {
 			sb.append(factOrRule).append('\n');
 		}
-		engine.consultSource(sb.toString());
+		try {
+			engine.consultSource(sb.toString());
+		} finally {
+			clausesModified(theory);
+		}
 	}
 
 }
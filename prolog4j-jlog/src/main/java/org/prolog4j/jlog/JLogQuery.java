@@ -64,7 +64,12 @@ public class JLogQuery extends Query {
 				bindings.put(var, cp.convertObject(actualArgs[i++]));
 			}
 		}
-		return new JLogSolution<A>(prover, getGoal(), bindings);
+		return new JLogSolution<A>(prover, getGoal(), bindings, this);
+	}
+
+	@Override
+	protected void halt() {
+		prover.halt();
 	}
 
 	@Override
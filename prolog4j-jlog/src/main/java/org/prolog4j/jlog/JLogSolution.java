@@ -24,12 +24,17 @@
 package org.prolog4j.jlog;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.function.Supplier;
 
 import org.prolog4j.ConversionPolicy;
 import org.prolog4j.InvalidQueryException;
+import org.prolog4j.LimitExceededException;
+import org.prolog4j.Query;
 import org.prolog4j.SolutionIterator;
 import org.prolog4j.UnknownVariableException;
 
@@ -50,6 +55,9 @@ public class JLogSolution<S> extends org.prolog4j.Solution<S> {
 
 //	private static final ConversionPolicy conversionPolicy = ProverFactory.getConversionPolicy();
 	
+	/** The JLog prover that is used for solving the query. */
+	private final JLogProver prover;
+
 	/** The JLog engine that is used for solving the query. */
 	private final jPrologAPI prolog;
 
@@ -62,23 +70,42 @@ public class JLogSolution<S> extends org.prolog4j.Solution<S> {
 	/** True if the query has a solution, otherwise false. */
 	private final boolean success;
 
+	/** The goal to solve. */
+	private final String goal;
+
 	/**
 	 * Constructs a JLogSolution instance.
 	 * 
 	 * @param prover the JLog prover, using which the solutions have to be found
 	 * @param goal the Prolog goal to solve
 	 * @param initialBindings the initial bindings of the variables
+	 * @param query the query to solve
 	 */
-	JLogSolution(JLogProver prover, String goal, Hashtable<String, Object> initialBindings) {
-		super();
+	JLogSolution(JLogProver prover, final String goal, 
+			final Hashtable<String, Object> initialBindings, Query query) {
+		super(prover, query);
+		this.prover = prover;
 		this.conversionPolicy = prover.getConversionPolicy();
 		this.prolog = prover.getEngine();
+		this.goal = goal;
 		try {
-			solution = prolog.query(goal, initialBindings);
+			solution = prover.solveWithin(goal, getTimeout(), 
+					new Supplier<Hashtable<String, Object>>() {
+				@Override
+				public Hashtable<String, Object> get() {
+					return prolog.query(goal, initialBindings);
+				}
+			});
 		} catch (SyntaxErrorException e) {
 			throw new InvalidQueryException(goal, e);
+		} catch (LimitExceededException e) {
+			prover.setOpenSolution(this);
+			close();
+			throw e;
 		}
 		success = solution != null;
+		solved(success);
+		prover.setOpenSolution(this);
 		if (!success || solution.size() == 0) {
 			return;
 		}
@@ -96,25 +123,112 @@ public class JLogSolution<S> extends org.prolog4j.Solution<S> {
 		return success;
 	}
 
+	/**
+	 * Returns the term bound to the given variable by the current solution.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the value of the variable
+	 */
+	private Object term(String variable) {
+		Object term = solution.get(variable);
+		if (term == null) {
+			throw new UnknownVariableException(variable);
+		}
+		return term;
+	}
+
 	@Override
 	public <A> A get(String variable) {
 		if (clazz == null) {
-			Object term = solution.get(variable);
-			if (term == null) {
-				throw new UnknownVariableException(variable);
-			}
-			return (A) conversionPolicy.convertTerm(term);
+			return convert(conversionPolicy, variable, term(variable), null);
 		}
 		return (A) get(variable, clazz);
 	}
 
 	@Override
 	public <A> A get(String variable, Class<A> type) {
-		Object term = solution.get(variable);
+		return convert(conversionPolicy, variable, term(variable), type);
+	}
+
+	@Override
+	public int getInt(String variable) {
+		return conversionPolicy.intValue(term(variable));
+	}
+
+	@Override
+	public long getLong(String variable) {
+		return conversionPolicy.longValue(term(variable));
+	}
+
+	@Override
+	public double getDouble(String variable) {
+		return conversionPolicy.doubleValue(term(variable));
+	}
+
+	@Override
+	public List<String> getVariables() {
+		return outputVarNames == null ? Collections.<String>emptyList() 
+				: Collections.unmodifiableList(Arrays.asList(outputVarNames));
+	}
+
+	/**
+	 * The slots are the indices of the variables in {@link #outputVarNames}.
+	 * JLog returns the bindings of each solution in a new table, so the value
+	 * is still looked up by the name of the variable.
+	 */
+	@Override
+	public int slotOf(String variable) {
+		if (outputVarNames != null) {
+			for (int i = 0; i < outputVarNames.length; ++i) {
+				if (outputVarNames[i].equals(variable)) {
+					return i;
+				}
+			}
+		}
+		throw new UnknownVariableException(variable);
+	}
+
+	/**
+	 * Returns the term bound to the variable of the given slot by the current 
+	 * solution.
+	 * 
+	 * @param slot the slot of the variable
+	 * @return the value of the variable
+	 */
+	private Object term(int slot) {
+		Object term = solution.get(outputVarNames[slot]);
 		if (term == null) {
-			throw new UnknownVariableException(variable);
+			throw new UnknownVariableException(outputVarNames[slot]);
+		}
+		return term;
+	}
+
+	@Override
+	public <A> A get(int slot) {
+		if (clazz == null) {
+			return convert(conversionPolicy, outputVarNames[slot], term(slot), null);
 		}
-		return (A) conversionPolicy.convertTerm(term, type);
+		return (A) get(slot, clazz);
+	}
+
+	@Override
+	public <A> A get(int slot, Class<A> type) {
+		return convert(conversionPolicy, outputVarNames[slot], term(slot), type);
+	}
+
+	@Override
+	public int getInt(int slot) {
+		return conversionPolicy.intValue(term(slot));
+	}
+
+	@Override
+	public long getLong(int slot) {
+		return conversionPolicy.longValue(term(slot));
+	}
+
+	@Override
+	public double getDouble(int slot) {
+		return conversionPolicy.doubleValue(term(slot));
 	}
 
 	@Override
@@ -123,7 +237,7 @@ public class JLogSolution<S> extends org.prolog4j.Solution<S> {
 		while (it.hasNext()) {
 			it.next();
 			for (int i = 0; i < collections.length; ++i) {
-				collections[i].add(it.get(outputVarNames[i]));
+				collections[i].add(it.get(i));
 			}
 		}
 	}
@@ -140,8 +254,30 @@ public class JLogSolution<S> extends org.prolog4j.Solution<S> {
 
 	@Override
 	protected boolean fetch() {
-		solution = prolog.retry();
+		try {
+			solution = prover.solveWithin(goal, getTimeout(), 
+					new Supplier<Hashtable<String, Object>>() {
+				@Override
+				public Hashtable<String, Object> get() {
+					return prolog.retry();
+				}
+			});
+		} catch (LimitExceededException e) {
+			close();
+			throw e;
+		}
 		return solution != null;
 	}
 
+	@Override
+	public void close() {
+		prover.release(this);
+		closed();
+	}
+
+	@Override
+	protected void halt() {
+		prover.halt();
+	}
+
 }
@@ -55,6 +55,10 @@ public class JTrologConversionPolicy extends ConversionPolicy {
 			return new Int(i);
 		}
 	};
+	/** The <tt>true</tt> atom. */
+	private static final StructAtom TRUE = new StructAtom("true");
+	/** The <tt>false</tt> atom. */
+	private static final StructAtom FALSE = new StructAtom("false");
 	/** Converts a Long object to a term. */
 	private static final Converter<Long> LONG_CONVERTER = new Converter<Long>() {
 		@Override
@@ -287,11 +291,26 @@ public class JTrologConversionPolicy extends ConversionPolicy {
 		return new Int(value);
 	}
 
+	@Override
+	public Object term(long value) {
+		return new jTrolog.terms.Long(value);
+	}
+
+	@Override
+	public Object term(float value) {
+		return new jTrolog.terms.Float(value);
+	}
+
 	@Override
 	public Object term(double value) {
 		return new jTrolog.terms.Double(value);
 	}
 
+	@Override
+	public Object term(boolean value) {
+		return value ? TRUE : FALSE;
+	}
+
 	@Override
 	public Object term(String name) {
 		try {
@@ -348,6 +367,11 @@ public class JTrologConversionPolicy extends ConversionPolicy {
 		return ((jTrolog.terms.Number) term).intValue();
 	}
 
+	@Override
+	public long longValue(Object term) {
+		return ((jTrolog.terms.Number) term).longValue();
+	}
+
 	@Override
 	public double doubleValue(Object term) {
 		return ((jTrolog.terms.Number) term).doubleValue();
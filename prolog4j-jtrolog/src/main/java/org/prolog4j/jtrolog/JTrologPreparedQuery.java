@@ -0,0 +1,110 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.jtrolog;
+
+import java.util.List;
+
+import jTrolog.errors.InvalidTermException;
+import jTrolog.parser.Parser;
+import jTrolog.terms.Struct;
+import jTrolog.terms.Term;
+import jTrolog.terms.Var;
+
+import org.prolog4j.ConversionPolicy;
+import org.prolog4j.InvalidQueryException;
+import org.prolog4j.PreparedQuery;
+import org.prolog4j.Prover;
+import org.prolog4j.Solution;
+
+/**
+ * The jTrolog implementation of the PreparedQuery class. jTrolog terms are not
+ * modified by solving them, so the parsed goal is shared by the invocations,
+ * only the unifications of the placeholders with the actual arguments are 
+ * created for each of them.
+ */
+public class JTrologPreparedQuery extends PreparedQuery {
+
+	/** The jTrolog representation of the goal to be solved. */
+	private final Struct sGoal;
+
+	/** The jTrolog variables representing the placeholders of the goal. */
+	private final Var[] inputVars;
+
+	/** The names of the output variables of the goal. */
+	private final String[] outputVarNames;
+
+	/** The name of the variable that is of special interest when solving the goal. */
+	private final String defaultVarName;
+
+	/**
+	 * Creates a jTrolog prepared query object.
+	 * 
+	 * @param prover the jTrolog prover that prepares the query
+	 * @param goal the Prolog goal to be solved
+	 */
+	JTrologPreparedQuery(JTrologProver prover, String goal) {
+		super(prover, goal);
+		try {
+			sGoal = (Struct) new Parser(getGoal()).nextTerm(true);
+		} catch (InvalidTermException e) {
+			throw new InvalidQueryException(getGoal());
+		}
+		Var[] vars = sGoal.getVarList();
+		List<String> placeholderNames = getPlaceholderNames();
+		inputVars = new Var[placeholderNames.size()];
+		outputVarNames = new String[vars.length];
+		for (int i = 0; i < vars.length; ++i) {
+			outputVarNames[i] = vars[i].toString();
+			int index = placeholderNames.indexOf(outputVarNames[i]);
+			if (index != -1) {
+				inputVars[index] = vars[i];
+			}
+		}
+		String defaultVar = null;
+		for (int i = outputVarNames.length - 1; i >= 0; --i) {
+			if (!outputVarNames[i].startsWith("P4J_")) {
+				defaultVar = outputVarNames[i];
+				break;
+			}
+		}
+		defaultVarName = defaultVar;
+	}
+
+	@Override
+	public <A> Solution<A> solve(Prover prover, Object... actualArgs) {
+		JTrologProver jtProver = (JTrologProver) prover;
+		ConversionPolicy cp = jtProver.getConversionPolicy();
+		Struct g = sGoal;
+		for (int i = 0; i < inputVars.length; ++i) {
+			g = new Struct(
+						",", 
+						new Term[]{
+								new Struct("=", new Term[]{inputVars[i], 
+										(Term) cp.convertObject(actualArgs[i])}),
+								g});
+		}
+		return new JTrologSolution<A>(jtProver, g, defaultVarName, outputVarNames, this);
+	}
+
+}
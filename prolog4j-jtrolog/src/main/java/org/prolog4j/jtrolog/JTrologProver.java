@@ -27,9 +27,12 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.time.Duration;
+import java.util.function.Supplier;
 
 import org.prolog4j.AbstractProver;
 import org.prolog4j.ConversionPolicy;
+import org.prolog4j.PreparedQuery;
 import org.prolog4j.Query;
 
 import jTrolog.errors.InvalidLibraryException;
@@ -80,9 +83,27 @@ public class JTrologProver extends AbstractProver {
 		return engine;
 	}
 
+	/**
+	 * {@inheritDoc} Overridden to be accessible to the solutions. Note that
+	 * the jTrolog engine cannot be halted, so a call that exceeds its time
+	 * limit runs to completion before the exception is thrown.
+	 */
+	@Override
+	protected <T> T solveWithin(Object goal, Duration timeout, 
+			Supplier<T> engineCall) {
+		return super.solveWithin(goal, timeout, engineCall);
+	}
+
 	@Override
 	public Query query(String goal) {
-		return new JTrologQuery(this, goal);
+		long start = parseStart();
+		return parsed(new JTrologQuery(this, goal), start);
+	}
+
+	@Override
+	public PreparedQuery prepare(String goal) {
+		long start = parseStart();
+		return parsed(new JTrologPreparedQuery(this, goal), start);
 	}
 	
 	@Override
@@ -106,6 +127,8 @@ public class JTrologProver extends AbstractProver {
 			engine.addTheory(sb.toString());
 		} catch (PrologException e) {
 			e.printStackTrace();
+		} finally {
+			theoryModified();
 		}
 	}
 
@@ -115,6 +138,8 @@ public class JTrologProver extends AbstractProver {
 			engine.addTheory(theory);
 		} catch (PrologException e) {
 			e.printStackTrace();
+		} finally {
+			clausesModified(theory);
 		}
 	}
 
@@ -128,6 +153,8 @@ public class JTrologProver extends AbstractProver {
 			engine.addTheory(sb.toString());
 		} catch (PrologException e) {
 			e.printStackTrace();
+		} finally {
+			clausesModified(theory);
 		}
 	}
 
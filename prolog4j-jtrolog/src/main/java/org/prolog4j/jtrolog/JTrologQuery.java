@@ -116,7 +116,7 @@ public class JTrologQuery extends Query {
 										(Term) cp.convertObject(actualArgs[i++])}),
 								g});
 		}
-		return new JTrologSolution<A>(prover, g, defaultVarName, outputVarNames);
+		return new JTrologSolution<A>(prover, g, defaultVarName, outputVarNames, this);
 	}
 
 	@Override
@@ -24,10 +24,14 @@
 package org.prolog4j.jtrolog;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 import org.prolog4j.ConversionPolicy;
+import org.prolog4j.Query;
 import org.prolog4j.SolutionIterator;
 import org.prolog4j.UnknownVariableException;
 
@@ -49,9 +53,15 @@ public class JTrologSolution<S> extends org.prolog4j.Solution<S> {
 	/** The conversion policy of the prover that is used for solving this query. */
 	private final ConversionPolicy cp;
 	
+	/** The jTrolog prover that is used for solving the query. */
+	private final JTrologProver prover;
+
 	/** The jTrolog engine that is used for solving the query. */
 	private final Prolog engine;
-	
+
+	/** The goal to be solved. */
+	private final Struct goal;
+
 	/** The name of the output variables of the query. */
 	private String[] outputVarNames;
 
@@ -71,20 +81,30 @@ public class JTrologSolution<S> extends org.prolog4j.Solution<S> {
 	 * @param sGoal a Prolog goal
 	 * @param defaultVarName the name of the output variable of special interest
 	 * @param outputVarNames the name of each output variable
+	 * @param query the query to solve
 	 */
-	JTrologSolution(JTrologProver prover, Struct sGoal, String defaultVarName, 
-			String[] outputVarNames) {
+	JTrologSolution(JTrologProver prover, final Struct sGoal, String defaultVarName, 
+			String[] outputVarNames, Query query) {
+		super(prover, query);
+		this.prover = prover;
 		this.cp = prover.getConversionPolicy();
 		this.engine = prover.getEngine();
+		this.goal = sGoal;
 		// this.defaultOutputVariable = defaultVarName;
 		on(defaultVarName);
 		this.outputVarNames = outputVarNames;
-		try {
-			solution = engine.solve(sGoal);
-		} catch (Throwable e) {
-			throw new RuntimeException(e);
-		}
+		solution = prover.solveWithin(sGoal, getTimeout(), new Supplier<Solution>() {
+			@Override
+			public Solution get() {
+				try {
+					return engine.solve(sGoal);
+				} catch (Throwable e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
 		success = solution.success();
+		solved(success);
 	}
 
 	@Override
@@ -92,27 +112,111 @@ public class JTrologSolution<S> extends org.prolog4j.Solution<S> {
 		return success;
 	}
 
+	/**
+	 * Returns the term bound to the given variable by the current solution.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the value of the variable
+	 */
+	private Term binding(String variable) {
+		Term binding = solution.getBinding(variable);
+		if (binding == null) {
+			throw new UnknownVariableException(variable);
+		}
+		return binding;
+	}
+
 	@Override
 	public <A> A get(String variable) {
 		if (clazz == null) {
-			Term binding = solution.getBinding(variable);
-			if (binding == null) {
-				throw new UnknownVariableException(variable);
-			}
 //			return (A) prover.getConversionPolicy().convertTerm(binding);
-			return (A) cp.convertTerm(binding);
+			return convert(cp, variable, binding(variable), null);
 		}
 		return (A) get(variable, clazz);
 	}
 
 	@Override
 	public <A> A get(String variable, Class<A> type) {
-		Term binding = solution.getBinding(variable);
-		if (binding == null) {
-			throw new UnknownVariableException(variable);
-		}
 //		return (A) prover.getConversionPolicy().convertTerm(binding, type);
-		return (A) cp.convertTerm(binding, type);
+		return convert(cp, variable, binding(variable), type);
+	}
+
+	@Override
+	public int getInt(String variable) {
+		return cp.intValue(binding(variable));
+	}
+
+	@Override
+	public long getLong(String variable) {
+		return cp.longValue(binding(variable));
+	}
+
+	@Override
+	public double getDouble(String variable) {
+		return cp.doubleValue(binding(variable));
+	}
+
+	@Override
+	public List<String> getVariables() {
+		return !success || outputVarNames == null 
+				? Collections.<String>emptyList() 
+				: Collections.unmodifiableList(Arrays.asList(outputVarNames));
+	}
+
+	/**
+	 * The slots are the indices of the variables in {@link #outputVarNames}.
+	 * jTrolog looks up the bindings of a solution by name, so the value is
+	 * read by the name of the variable.
+	 */
+	@Override
+	public int slotOf(String variable) {
+		if (outputVarNames != null) {
+			for (int i = 0; i < outputVarNames.length; ++i) {
+				if (outputVarNames[i].equals(variable)) {
+					return i;
+				}
+			}
+		}
+		throw new UnknownVariableException(variable);
+	}
+
+	/**
+	 * Returns the term bound to the variable of the given slot by the current 
+	 * solution.
+	 * 
+	 * @param slot the slot of the variable
+	 * @return the value of the variable
+	 */
+	private Term binding(int slot) {
+		return binding(outputVarNames[slot]);
+	}
+
+	@Override
+	public <A> A get(int slot) {
+		if (clazz == null) {
+			return convert(cp, outputVarNames[slot], binding(slot), null);
+		}
+		return (A) get(slot, clazz);
+	}
+
+	@Override
+	public <A> A get(int slot, Class<A> type) {
+		return convert(cp, outputVarNames[slot], binding(slot), type);
+	}
+
+	@Override
+	public int getInt(int slot) {
+		return cp.intValue(binding(slot));
+	}
+
+	@Override
+	public long getLong(int slot) {
+		return cp.longValue(binding(slot));
+	}
+
+	@Override
+	public double getDouble(int slot) {
+		return cp.doubleValue(binding(slot));
 	}
 
 	@Override
@@ -121,7 +225,7 @@ public class JTrologSolution<S> extends org.prolog4j.Solution<S> {
 		while (it.hasNext()) {
 			it.next();
 			for (int i = 0; i < collections.length; ++i) {
-				collections[i].add(it.get(outputVarNames[i]));
+				collections[i].add(it.get(i));
 			}
 		}
 	}
@@ -138,15 +242,23 @@ public class JTrologSolution<S> extends org.prolog4j.Solution<S> {
 
 	@Override
 	protected boolean fetch() {
-		try {
-			return engine.hasOpenAlternatives()
-						&& (solution = engine.solveNext()).success();
-		} catch (NoMorePrologSolutions e) {
-			// Should not happen.
-			throw new IllegalStateException(e);
-		} catch (Throwable e) {
-			throw new RuntimeException(e);
+		if (!engine.hasOpenAlternatives()) {
+			return false;
 		}
+		solution = prover.solveWithin(goal, getTimeout(), new Supplier<Solution>() {
+			@Override
+			public Solution get() {
+				try {
+					return engine.solveNext();
+				} catch (NoMorePrologSolutions e) {
+					// Should not happen.
+					throw new IllegalStateException(e);
+				} catch (Throwable e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		return solution.success();
 	}
 
 }
@@ -41,6 +41,10 @@ import jpl.Util;
  */
 public class SWIPrologConversionPolicy extends ConversionPolicy {
 
+	/** The <tt>true</tt> atom. */
+	private static final Atom TRUE = new Atom("true");
+	/** The <tt>false</tt> atom. */
+	private static final Atom FALSE = new Atom("false");
 	/** Converts an Integer object to a term. */
 	private static final Converter<Integer> INTEGER_CONVERTER = new Converter<Integer>() {
 		@Override
@@ -204,11 +208,26 @@ public class SWIPrologConversionPolicy extends ConversionPolicy {
 		return new jpl.Integer(value);
 	}
 
+	@Override
+	public Object term(long value) {
+		return new jpl.Integer(value);
+	}
+
+	@Override
+	public Object term(float value) {
+		return new jpl.Float(value);
+	}
+
 	@Override
 	public Object term(double value) {
 		return new jpl.Float(value);
 	}
 
+	@Override
+	public Object term(boolean value) {
+		return value ? TRUE : FALSE;
+	}
+
 	@Override
 	public Object term(String name) {
 		return Util.textToTerm(name);
@@ -228,6 +247,11 @@ public class SWIPrologConversionPolicy extends ConversionPolicy {
 		return ((Term) term).intValue();
 	}
 
+	@Override
+	public long longValue(Object term) {
+		return ((Term) term).longValue();
+	}
+
 	@Override
 	public double doubleValue(Object term) {
 		return ((Term) term).doubleValue();
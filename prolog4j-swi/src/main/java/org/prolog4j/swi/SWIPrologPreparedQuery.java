@@ -0,0 +1,85 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.swi;
+
+import java.util.List;
+
+import jpl.PrologException;
+import jpl.Term;
+import jpl.Util;
+import jpl.Variable;
+
+import org.prolog4j.ConversionPolicy;
+import org.prolog4j.InvalidQueryException;
+import org.prolog4j.PreparedQuery;
+import org.prolog4j.Prover;
+import org.prolog4j.Solution;
+
+/**
+ * The SWI-Prolog implementation of the PreparedQuery class. JPL terms are not
+ * modified by solving them, so the parsed goal is shared by the invocations,
+ * only the unifications of the placeholders with the actual arguments are 
+ * created for each of them.
+ */
+public class SWIPrologPreparedQuery extends PreparedQuery {
+
+	/** The SWI-Prolog representation of the goal to be solved. */
+	private final Term sGoal;
+
+	/** The names of the placeholder variables of the goal. */
+	private final String[] placeholderNames;
+
+	/**
+	 * Creates a SWI-Prolog prepared query object.
+	 * 
+	 * @param prover the SWI-Prolog prover that prepares the query
+	 * @param goal the Prolog goal to be solved
+	 */
+	SWIPrologPreparedQuery(SWIPrologProver prover, String goal) {
+		super(prover, goal);
+		List<String> names = getPlaceholderNames();
+		placeholderNames = names.toArray(new String[names.size()]);
+		try {
+			sGoal = Util.textToTerm(getGoal());
+		} catch (PrologException exc) {
+			throw new InvalidQueryException(getGoal());
+		}
+	}
+
+	@Override
+	public <A> Solution<A> solve(Prover prover, Object... actualArgs) {
+		ConversionPolicy cp = prover.getConversionPolicy();
+		Term g = sGoal;
+		for (int i = 0; i < placeholderNames.length; ++i) {
+			g = new jpl.Compound(
+						",", 
+						new Term[]{
+								new jpl.Compound("=", new Term[]{new Variable(placeholderNames[i]), 
+										(Term) cp.convertObject(actualArgs[i])}),
+								g});
+		}
+		return new SWIPrologSolution<A>((SWIPrologProver) prover, g, this);
+	}
+
+}
@@ -23,13 +23,25 @@
  */
 package org.prolog4j.swi;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
+import jpl.Term;
 import jpl.Util;
 
 import org.prolog4j.AbstractProver;
+import org.prolog4j.ClauseReader;
+import org.prolog4j.Compound;
+import org.prolog4j.ConversionPolicy;
+import org.prolog4j.PreparedQuery;
 import org.prolog4j.Query;
+import org.prolog4j.TheoryLoadListener;
 
 /**
  * Represents a Prolog knowledge base and provides methods for solving queries
@@ -47,9 +59,27 @@ public class SWIPrologProver extends AbstractProver {
 		super();
 	}
 
+	/**
+	 * Sets the maximal number of inferences of finding a solution. The goals
+	 * are run by <tt>call_with_inference_limit/3</tt> if the limit is set.
+	 * 
+	 * @param maxInferences the inference limit, or zero to remove the limit
+	 */
+	@Override
+	public void setMaxInferences(long maxInferences) {
+		storeMaxInferences(maxInferences);
+	}
+
 	@Override
 	public Query query(String goal) {
-		return new SWIPrologQuery(this, goal);
+		long start = parseStart();
+		return parsed(new SWIPrologQuery(this, goal), start);
+	}
+
+	@Override
+	public PreparedQuery prepare(String goal) {
+		long start = parseStart();
+		return parsed(new SWIPrologPreparedQuery(this, goal), start);
 	}
 
 	@Override
@@ -59,25 +89,125 @@ public class SWIPrologProver extends AbstractProver {
 
 	@Override
 	public void loadTheory(InputStream input) throws IOException {
-		throw new UnsupportedOperationException();
+		try {
+			loadClauses(new ClauseReader(new BufferedReader(
+					new InputStreamReader(input, StandardCharsets.UTF_8))));
+		} finally {
+			theoryModified();
+		}
 	}
 
-	public void loadTheory(String filename) {
-		throw new UnsupportedOperationException();
-//		new jpl.Query("consult", new jpl.Term[]{new jpl.Atom(filename)});
+	/**
+	 * Loads a Prolog theory from a file.
+	 * 
+	 * @param filename the name of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public void loadTheory(String filename) throws IOException {
+		loadTheory(Paths.get(filename));
+	}
+
+	/**
+	 * The file is consulted by SWI-Prolog itself, so it is read by the native
+	 * parser, and the clauses are not counted. The listener is notified only
+	 * once, after the file has been consulted.
+	 * 
+	 * @param file the file to load
+	 * @param listener the listener to report the progress to
+	 * @throws IOException if the file cannot be read
+	 */
+	@Override
+	public void loadTheory(Path file, TheoryLoadListener listener) 
+			throws IOException {
+		long totalBytes = Files.size(file);
+		Term path = new jpl.Atom(file.toAbsolutePath().toString());
+		try {
+			if (!new jpl.Query("consult", new Term[]{path}).hasSolution()) {
+				throw new IOException("Cannot consult " + file);
+			}
+		} finally {
+			theoryModified();
+		}
+		if (listener != null) {
+			listener.progress(-1, totalBytes, totalBytes);
+		}
+	}
+
+	/**
+	 * Asserts the clauses one by one, and calls the directives.
+	 * 
+	 * @param clauses the clauses to load
+	 * @throws IOException if reading the clauses fails
+	 */
+	@Override
+	protected void loadClauses(ClauseReader clauses) throws IOException {
+		String clause;
+		while ((clause = clauses.readClause()) != null) {
+			Term term = Util.textToTerm(clause);
+			if (term.isCompound() && term.arity() == 1 && term.name().equals(":-")) {
+				new jpl.Query(term.arg(1)).hasSolution();
+			} else {
+				assertClause(term);
+			}
+		}
 	}
 
 	@Override
 	public void addTheory(String theory) {
 		jpl.Query query = new jpl.Query("assertz", new jpl.Term[]{Util.textToTerm(theory)});
-		query.hasSolution();
+		try {
+			query.hasSolution();
+		} finally {
+			clausesModified(theory);
+		}
+	}
+
+	@Override
+	public void assertz(Compound... facts) {
+		ConversionPolicy cp = getConversionPolicy();
+		for (Compound fact: facts) {
+			try {
+				assertClause((Term) cp.convertObject(fact));
+			} finally {
+				theoryModified(fact.getFunctor());
+			}
+		}
+	}
+
+	@Override
+	public void assertAll(String functor, Iterable<Object[]> rows) {
+		ConversionPolicy cp = getConversionPolicy();
+		try {
+			for (Object[] row: rows) {
+				Term[] args = new Term[row.length];
+				for (int i = 0; i < args.length; ++i) {
+					args[i] = (Term) cp.convertObject(row[i]);
+				}
+				assertClause(new jpl.Compound(functor, args));
+			}
+		} finally {
+			theoryModified(functor);
+		}
+	}
+
+	/**
+	 * Asserts a clause to the database of SWI-Prolog.
+	 * 
+	 * @param clause the clause to assert
+	 */
+	private void assertClause(Term clause) {
+		new jpl.Query("assertz", new Term[]{clause}).hasSolution();
 	}
 
 	@Override
 	public void addTheory(String... theory) {
-		for (String clause: theory) {
-			jpl.Query query = new jpl.Query("assertz", new jpl.Term[]{Util.textToTerm(clause)});
-			query.hasSolution();
+		try {
+			for (String clause: theory) {
+				jpl.Query query = new jpl.Query("assertz", new jpl.Term[]{Util.textToTerm(clause)});
+				query.hasSolution();
+			}
+		} finally {
+			clausesModified(theory);
 		}
 	}
 
@@ -43,6 +43,9 @@ import org.prolog4j.UnknownVariableException;
  */
 public class SWIPrologQuery extends Query {
 	
+	/** The prefix of the variables that carry the actual arguments. */
+	static final String ARG_PREFIX = "J__";
+
 	/** The tuProlog prover used to process this query. */
 	private final SWIPrologProver prover;
 	
@@ -83,7 +86,7 @@ public class SWIPrologQuery extends Query {
 		}
 		for (int i = 0, index = 0; i < placeholderNo; ++i, ++index) {
 			Variable argVar = new Variable(placeholderNames.get(i));
-			Variable arg = new Variable("J__" + argVar.name());
+			Variable arg = new Variable(ARG_PREFIX + argVar.name());
 			sGoal = new jpl.Compound(",", new Term[]{new jpl.Compound("=", new Term[]{argVar, arg}), sGoal});
 			inputVars[index] = arg;
 		}
@@ -104,7 +107,7 @@ public class SWIPrologQuery extends Query {
 										(Term) cp.convertObject(actualArgs[i++])}),
 								g});
 		}
-		return new SWIPrologSolution<A>(prover, g);
+		return new SWIPrologSolution<A>(prover, g, this);
 	}
 
 	@Override
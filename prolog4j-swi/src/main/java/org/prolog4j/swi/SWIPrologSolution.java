@@ -23,18 +23,23 @@
  */
 package org.prolog4j.swi;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.NoSuchElementException;
 
+import jpl.Atom;
+import jpl.PrologException;
 import jpl.Term;
 import jpl.Variable;
 
 import org.prolog4j.ConversionPolicy;
-import org.prolog4j.Prover;
+import org.prolog4j.LimitExceededException;
 import org.prolog4j.ProverFactory;
+import org.prolog4j.Query;
 import org.prolog4j.Solution;
 import org.prolog4j.SolutionIterator;
 import org.prolog4j.UnknownVariableException;
@@ -48,8 +53,23 @@ import org.prolog4j.UnknownVariableException;
  */
 public class SWIPrologSolution<S> extends Solution<S> {
 
+	/**
+	 * The variable that is bound to the outcome of 
+	 * <tt>call_with_inference_limit/3</tt> if the inference limit is set.
+	 */
+	private static final String LIMIT_VAR = "P4J_InferenceLimit";
+
+	/** The outcome of <tt>call_with_inference_limit/3</tt> if the limit is exceeded. */
+	private static final Atom LIMIT_EXCEEDED = new Atom("inference_limit_exceeded");
+
+	/** The variable that is bound to the alarm of the time limit, if it is set. */
+	private static final String ALARM_VAR = "P4J_Alarm";
+
+	/** The exception thrown by the alarm if the time limit is exceeded. */
+	private static final Atom TIME_LIMIT_EXCEEDED = new Atom("time_limit_exceeded");
+
 	/** The SWI-Prolog prover that is used for solving this query. */
-	private Prover prover;
+	private SWIPrologProver prover;
 
 	/** The conversion policy of the SWI-Prolog prover that is used for solving this query. */
 	private final ConversionPolicy cp;
@@ -68,21 +88,45 @@ public class SWIPrologSolution<S> extends Solution<S> {
 	/** True if the query has a solution, otherwise false. */
 	private final boolean success;
 
+	/** The goal to be solved. */
+	private final Term goal;
+
+	/** The inference limit of finding a solution, or zero. */
+	private final long maxInferences;
+
+	/** The time limit of finding a solution, or <tt>null</tt>. */
+	private final Duration timeLimit;
+
 	/**
 	 * Creates an object, using which the solutions of a query can be accessed.
 	 * 
 	 * @param prover the SWI-Prolog prover
 	 * @param goal the goal to be solved
+	 * @param origin the query to solve
 	 */
-	SWIPrologSolution(Prover prover, Term goal) {
+	SWIPrologSolution(SWIPrologProver prover, Term goal, Query origin) {
+		super(prover, origin);
 		this.prover = prover;
 		this.cp = prover.getConversionPolicy();
+		this.goal = goal;
+		this.maxInferences = prover.getMaxInferences();
+		if (maxInferences > 0) {
+			goal = new jpl.Compound("call_with_inference_limit", new Term[]{
+					goal, new jpl.Integer(maxInferences), new Variable(LIMIT_VAR)});
+		}
+		Duration timeout = getTimeout() != null ? getTimeout() : prover.getTimeout();
+		if (timeout != null && !timeout.isZero() && !timeout.isNegative()) {
+			timeLimit = timeout;
+			goal = withTimeLimit(goal, timeout);
+		} else {
+			timeLimit = null;
+		}
 		query = new jpl.Query(goal);
-		success = query.hasMoreSolutions();
+		success = fetch();
+		solved(success);
 		if (!success) {
 			return;
 		}
-		solution = query.nextSolution();
 		vars = new ArrayList(solution.keySet());
 		if (vars.size() > 0) {
 			// defaultOutputVariable = varName(vars.size() - 1);
@@ -90,6 +134,39 @@ public class SWIPrologSolution<S> extends Solution<S> {
 		}
 	}
 
+	/**
+	 * Wraps the goal so that finding each of its solutions is aborted by an
+	 * alarm of <tt>library(time)</tt> after the time limit. The goal is 
+	 * called as
+	 * <pre>
+	 * setup_call_cleanup(alarm(T, throw(time_limit_exceeded), Id),
+	 *         (Goal, (uninstall_alarm(Id) ; install_alarm(Id, T), fail)),
+	 *         remove_alarm(Id))
+	 * </pre>
+	 * so the alarm is stopped while the solution is processed in Java, and 
+	 * restarted when the next one is looked for. Unlike 
+	 * <tt>call_with_time_limit/2</tt>, it keeps the choice points of the 
+	 * goal, and the runaway goal is stopped in the engine.
+	 * 
+	 * @param goal the goal
+	 * @param timeout the time limit of finding a solution
+	 * @return the wrapped goal
+	 */
+	private static Term withTimeLimit(Term goal, Duration timeout) {
+		Term seconds = new jpl.Float(timeout.toNanos() / 1e9);
+		Variable alarm = new Variable(ALARM_VAR);
+		Term setup = new jpl.Compound("alarm", new Term[]{seconds, 
+				new jpl.Compound("throw", new Term[]{TIME_LIMIT_EXCEEDED}), alarm});
+		Term pause = new jpl.Compound(";", new Term[]{
+				new jpl.Compound("uninstall_alarm", new Term[]{alarm}),
+				new jpl.Compound(",", new Term[]{
+						new jpl.Compound("install_alarm", new Term[]{alarm, seconds}),
+						new Atom("fail")})});
+		return new jpl.Compound("setup_call_cleanup", new Term[]{setup, 
+				new jpl.Compound(",", new Term[]{goal, pause}), 
+				new jpl.Compound("remove_alarm", new Term[]{alarm})});
+	}
+
 	@Override
 	public boolean isSuccess() {
 		return success;
@@ -105,25 +182,124 @@ public class SWIPrologSolution<S> extends Solution<S> {
 		return vars.get(varIndex);
 	}
 
+	/**
+	 * Returns the term bound to the given variable by the current solution.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the value of the variable
+	 */
+	private Term term(String variable) {
+		Term term = solution.get(variable);
+		if (term == null) {
+			throw new UnknownVariableException(variable);
+		}
+		return term;
+	}
+
 	@Override
 	public <A> A get(String variable) {
 		if (clazz == null) {
-			Term term = solution.get(variable);
-			if (term == null) {
-				throw new UnknownVariableException(variable);
-			}
-			return (A) cp.convertTerm(term);
+			return convert(cp, variable, term(variable), null);
 		}
 		return (A) get(variable, clazz);
 	}
 
 	@Override
 	public <A> A get(String variable, Class<A> type) {
-		Term term = solution.get(variable);
+		return convert(cp, variable, term(variable), type);
+	}
+
+	@Override
+	public int getInt(String variable) {
+		return cp.intValue(term(variable));
+	}
+
+	@Override
+	public long getLong(String variable) {
+		return cp.longValue(term(variable));
+	}
+
+	@Override
+	public double getDouble(String variable) {
+		return cp.doubleValue(term(variable));
+	}
+
+	/**
+	 * The variables that carry the actual arguments of the placeholders are
+	 * left out.
+	 */
+	@Override
+	public List<String> getVariables() {
+		if (vars == null) {
+			return Collections.emptyList();
+		}
+		List<String> names = new ArrayList<String>(vars.size());
+		for (String var: vars) {
+			if (!var.startsWith(SWIPrologQuery.ARG_PREFIX)) {
+				names.add(var);
+			}
+		}
+		return Collections.unmodifiableList(names);
+	}
+
+	/**
+	 * The slots are the indices of the variables in {@link #vars}. JPL
+	 * returns the bindings of each solution in a new table, so the value is
+	 * still looked up by the name of the variable.
+	 */
+	@Override
+	public int slotOf(String variable) {
+		if (vars != null) {
+			for (int i = 0; i < vars.size(); ++i) {
+				if (vars.get(i).equals(variable)) {
+					return i;
+				}
+			}
+		}
+		throw new UnknownVariableException(variable);
+	}
+
+	/**
+	 * Returns the term bound to the variable of the given slot by the current 
+	 * solution.
+	 * 
+	 * @param slot the slot of the variable
+	 * @return the value of the variable
+	 */
+	private Term term(int slot) {
+		Term term = solution.get(vars.get(slot));
 		if (term == null) {
-			throw new UnknownVariableException(variable);
+			throw new UnknownVariableException(vars.get(slot));
+		}
+		return term;
+	}
+
+	@Override
+	public <A> A get(int slot) {
+		if (clazz == null) {
+			return convert(cp, varName(slot), term(slot), null);
 		}
-		return (A) cp.convertTerm(term, type);
+		return (A) get(slot, clazz);
+	}
+
+	@Override
+	public <A> A get(int slot, Class<A> type) {
+		return convert(cp, varName(slot), term(slot), type);
+	}
+
+	@Override
+	public int getInt(int slot) {
+		return cp.intValue(term(slot));
+	}
+
+	@Override
+	public long getLong(int slot) {
+		return cp.longValue(term(slot));
+	}
+
+	@Override
+	public double getDouble(int slot) {
+		return cp.doubleValue(term(slot));
 	}
 
 	@Override
@@ -132,7 +308,7 @@ public class SWIPrologSolution<S> extends Solution<S> {
 		while (it.hasNext()) {
 			it.next();
 			for (int i = 0; i < collections.length; ++i) {
-				collections[i].add(it.get(varName(i)));
+				collections[i].add(it.get(i));
 			}
 		}
 	}
@@ -149,11 +325,37 @@ public class SWIPrologSolution<S> extends Solution<S> {
 
 	@Override
 	protected boolean fetch() {
-		boolean hasNext = query.hasMoreSolutions();
-		if (hasNext) {
-			solution = query.nextSolution();
+		Hashtable<String, Term> next;
+		try {
+			if (!query.hasMoreSolutions()) {
+				return false;
+			}
+			next = query.nextSolution();
+		} catch (PrologException e) {
+			if (timeLimit != null && TIME_LIMIT_EXCEEDED.equals(e.term())) {
+				close();
+				LimitExceededException lee = 
+					new LimitExceededException(goal.toString(), timeLimit);
+				lee.initCause(e);
+				throw lee;
+			}
+			throw e;
 		}
-		return hasNext;
+		if (timeLimit != null) {
+			next.remove(ALARM_VAR);
+		}
+		if (maxInferences > 0 && LIMIT_EXCEEDED.equals(next.remove(LIMIT_VAR))) {
+			close();
+			throw new LimitExceededException(goal.toString(), maxInferences);
+		}
+		solution = next;
+		return true;
+	}
+
+	@Override
+	public void close() {
+		query.close();
+		closed();
 	}
 
 }
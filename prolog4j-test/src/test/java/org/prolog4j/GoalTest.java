@@ -3,15 +3,24 @@ package org.prolog4j;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.prolog4j.annotations.Bind;
 import org.prolog4j.annotations.Goal;
 import org.prolog4j.annotations.Theory;
+import org.prolog4j.apt.Weaver;
 
 @Theory({
 	"membr(X, [X|_]).",
@@ -46,6 +55,14 @@ public class GoalTest {
 		Assert.assertTrue(goalBoolean2(3));
 		Assert.assertFalse(goalBoolean2(5));
 		Assert.assertEquals(goalPrimitive(), 2);
+		Assert.assertEquals(5L, goalSum(2L, 3));
+		Assert.assertEquals(3.0, goalTwice(1.5), 0.0);
+		Assert.assertEquals(4.0f, goalTwiceFloat(2.0f), 0.0f);
+		Assert.assertEquals((short) 7, goalIncrement((short) 6));
+		Assert.assertTrue(goalTrue(true));
+		Assert.assertFalse(goalTrue(false));
+		Assert.assertTrue(goalPrecompiled(3).isSuccess());
+		Assert.assertFalse(goalPrecompiled(5).isSuccess());
 //		Assert.assertEquals(goalOutNamed(), 2);
 //		Assert.assertEquals(goalOutNamedX(), 2);
 //		Assert.assertEquals(goalOutNamedY(), 1);
@@ -71,6 +88,226 @@ public class GoalTest {
 //		assertFailure(goalBindArgYX(1, 2));
 	}
 
+	@Test
+	public void testGoalNotCached() throws IllegalAccessException {
+		int fields = 0;
+		for (Field f: GoalTest.class.getDeclaredFields()) {
+			if (f.getName().startsWith("$P4J_GOAL_")) {
+				++fields;
+				Query q = (Query) f.get(null);
+				Assert.assertFalse("member(?, [2, 3, 4]).".equals(q.getGoalPattern()));
+			}
+		}
+		Assert.assertTrue(fields > 0);
+	}
+
+	@Test
+	public void testWeaver() throws IOException {
+		Path dir = Files.createTempDirectory("woven");
+		Path classFile = dir.resolve("org/prolog4j/GoalTest.class");
+		Path index = dir.resolve(Weaver.INDEX);
+		try {
+			Files.createDirectories(classFile.getParent());
+			byte[] original;
+			try (InputStream in = GoalTest.class.getResourceAsStream("GoalTest.class")) {
+				original = in.readAllBytes();
+			}
+			Files.write(classFile, original);
+			Weaver weaver = new Weaver();
+			Assert.assertEquals(1, weaver.weave(dir.toFile()));
+			Assert.assertEquals(Arrays.asList("org/prolog4j/GoalTest"), Files.readAllLines(index));
+			Assert.assertEquals(0, weaver.weave(dir.toFile()));
+			Assert.assertTrue(Files.exists(index));
+			// recompiled after weaving
+			Files.write(classFile, original);
+			Assert.assertEquals(1, weaver.weave(dir.toFile()));
+			Files.delete(classFile);
+			Assert.assertEquals(0, weaver.weave(dir.toFile()));
+			Assert.assertFalse(Files.exists(index));
+		} finally {
+			Files.deleteIfExists(classFile);
+			Files.deleteIfExists(classFile.getParent());
+			Files.deleteIfExists(dir.resolve("org"));
+			Files.deleteIfExists(index);
+			Files.deleteIfExists(index.getParent());
+			Files.deleteIfExists(index.getParent().getParent());
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void testStaticGoal() {
+		Assert.assertEquals(9, goalTriple(3));
+		Assert.assertTrue(goalStaticMember("b", Arrays.asList("a", "b")));
+	}
+
+	@Test
+	public void testConversionPolicyReplaced() {
+		Assert.assertEquals(5L, goalSum(2L, 3));
+		ConversionPolicy policy = p.getConversionPolicy();
+		p.setConversionPolicy(new ScalingPolicy(ProverFactory.createConversionPolicy()));
+		try {
+			Assert.assertEquals(70L, goalSum(3L, 4));
+			Assert.assertEquals(90L, goalSum(4L, 5));
+		} finally {
+			p.setConversionPolicy(policy);
+		}
+		Assert.assertEquals(11L, goalSum(5L, 6));
+	}
+
+	@Test
+	public void testGoalInStaticInitializer() {
+		Assert.assertTrue(EarlyGoal.EARLY);
+		Assert.assertTrue(EarlyGoal.isOne(1));
+		Assert.assertFalse(EarlyGoal.isOne(2));
+	}
+
+	/**
+	 * Calls its goal method from its static initializer.
+	 */
+	public static class EarlyGoal {
+
+		static final boolean EARLY = isOne(1);
+
+		@Goal("? = 1.")
+		public static boolean isOne(int x) {
+			return false;
+		}
+	}
+
+	/**
+	 * Converts the integers to ten times their value, so that the goal
+	 * methods give different results if they are linked with it.
+	 */
+	private static class ScalingPolicy extends ConversionPolicy {
+
+		private final ConversionPolicy delegate;
+
+		ScalingPolicy(ConversionPolicy delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public Object term(int value) {
+			return delegate.term(value * 10);
+		}
+
+		@Override
+		public Object term(long value) {
+			return delegate.term(value * 10);
+		}
+
+		@Override
+		public Object convertObject(Object object) {
+			return delegate.convertObject(object);
+		}
+
+		@Override
+		public Object convertTerm(Object term) {
+			return delegate.convertTerm(term);
+		}
+
+		@Override
+		public <T> T convertTerm(Object term, Class<T> type) {
+			return delegate.convertTerm(term, type);
+		}
+
+		@Override
+		public boolean match(Object term1, Object term2) {
+			return delegate.match(term1, term2);
+		}
+
+		@Override
+		public boolean isInteger(Object term) {
+			return delegate.isInteger(term);
+		}
+
+		@Override
+		public boolean isDouble(Object term) {
+			return delegate.isDouble(term);
+		}
+
+		@Override
+		public boolean isAtom(Object term) {
+			return delegate.isAtom(term);
+		}
+
+		@Override
+		public boolean isCompound(Object term) {
+			return delegate.isCompound(term);
+		}
+
+		@Override
+		public Object term(float value) {
+			return delegate.term(value);
+		}
+
+		@Override
+		public Object term(double value) {
+			return delegate.term(value);
+		}
+
+		@Override
+		public Object term(boolean value) {
+			return delegate.term(value);
+		}
+
+		@Override
+		public Object term(String name) {
+			return delegate.term(name);
+		}
+
+		@Override
+		public Object term(String pattern, Object... args) {
+			return delegate.term(pattern, args);
+		}
+
+		@Override
+		public int intValue(Object term) {
+			return delegate.intValue(term);
+		}
+
+		@Override
+		public long longValue(Object term) {
+			return delegate.longValue(term);
+		}
+
+		@Override
+		public double doubleValue(Object term) {
+			return delegate.doubleValue(term);
+		}
+
+		@Override
+		protected String getName(Object compound) {
+			return delegate.getName(compound);
+		}
+
+		@Override
+		protected int getArity(Object compound) {
+			return delegate.getArity(compound);
+		}
+
+		@Override
+		protected Object getArg(Object compound, int index) {
+			return delegate.getArg(compound, index);
+		}
+	}
+
+	@Test
+	public void testCollections() {
+		Assert.assertEquals(Arrays.asList(2, 3, 4), goalList());
+		Assert.assertEquals(Arrays.asList(3, 4), 
+				goalStream().filter(i -> i > 2).collect(Collectors.toList()));
+		Assert.assertEquals(Optional.of(2), goalOptional(2));
+		Assert.assertEquals(Optional.empty(), goalOptional(5));
+		List<Pair> pairs = goalPairs();
+		Assert.assertEquals(2, pairs.size());
+		Assert.assertEquals(1, pairs.get(0).key);
+		Assert.assertEquals("a", pairs.get(0).value);
+		Assert.assertEquals(2, pairs.get(1).key);
+		Assert.assertEquals("b", pairs.get(1).value);
+	}
+
     /**
      * Asserts that there is a solution. Equivalent with
      * <code>assertTrue(solution.isSuccess());</code>.
@@ -137,6 +374,68 @@ public class GoalTest {
 		return 0;
 	}
 
+	@Goal("X is ? + ?.")
+	public long goalSum(long a, int b) {
+		return 0;
+	}
+
+	@Goal("X is ? * 2.")
+	public double goalTwice(double d) {
+		return 0;
+	}
+
+	@Goal("X is ? * 2.")
+	public float goalTwiceFloat(float f) {
+		return 0;
+	}
+
+	@Goal("X is ? + 1.")
+	public short goalIncrement(short s) {
+		return 0;
+	}
+
+	@Goal("X is ? * 3.")
+	public static int goalTriple(int i) {
+		return 0;
+	}
+
+	@Goal("membr(?, ?).")
+	public static boolean goalStaticMember(Object o, List<?> list) {
+		return false;
+	}
+
+	@Goal("member(X, [2, 3, 4]).")
+	public @Bind("X") List<Integer> goalList() {
+		return null;
+	}
+
+	@Goal("member(X, [2, 3, 4]).")
+	public Stream<Integer> goalStream() {
+		return null;
+	}
+
+	@Goal("member(X, [2, 3, 4]), X = ?.")
+	public Optional<Integer> goalOptional(int i) {
+		return null;
+	}
+
+	public static class Pair {
+		@Bind("K")
+		private int key;
+		@Bind("V")
+		private String value;
+	}
+
+	@Goal("member(K-V, [1-a, 2-b]).")
+	public List<Pair> goalPairs() {
+		return null;
+	}
+
+	@Goal("? == true.")
+	public boolean goalTrue(boolean b) {
+		return false;
+	}
+
 	@Goal(value = "member(X, [2, 3, 4]).")
 	public @Bind("X") Object goalOutNamed() {
 		return null;
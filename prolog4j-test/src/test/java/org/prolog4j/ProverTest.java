@@ -24,16 +24,43 @@
 package org.prolog4j;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -197,6 +224,571 @@ public class ProverTest {
     	assertSuccess(q.solve(1));
     }
     
+    /**
+     * Tests {@link PreparedQuery}.
+     */
+    @Test
+    public void testPreparedQuery() {
+        PreparedQuery q = p.prepare("member(?, [1, 2, 3]).");
+        assertFailure(q.solve(4));
+        assertSuccess(q.solve(1));
+        assertSuccess(q.solve(3));
+        PreparedQuery q2 = p.prepare("append(?L1, ?L2, L12).");
+        assertEquals(Arrays.asList("socrates", "thales", "plato"), 
+                q2.solve(Arrays.asList("socrates"), Arrays.asList("thales", "plato"))
+                .get("L12"));
+        assertEquals(Arrays.asList("plato"), 
+                q2.solve(Arrays.asList(), Arrays.asList("plato")).get("L12"));
+    }
+
+    /**
+     * Tests that a prepared query cannot be modified.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPreparedQueryBind() {
+        p.prepare("member(?, [1, 2, 3]).").bind(0, 1);
+    }
+
+    /**
+     * Tests solving the same {@link PreparedQuery} by several threads, each of
+     * them using its own prover.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void testPreparedQueryConcurrently() throws InterruptedException {
+        final ProverPool pool = new ProverPool(2,
+                "mortal(X) :- human(X).",
+                "human(socrates).",
+                "human(plato).");
+        final PreparedQuery q = p.prepare("mortal(?).");
+        final AtomicInteger successes = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10; ++j) {
+                        try {
+                            Prover p = pool.acquire();
+                            try {
+                                if (q.solve(p, "plato").isSuccess()
+                                        && !q.solve(p, "zeus").isSuccess()) {
+                                    successes.incrementAndGet();
+                                }
+                            } finally {
+                                pool.release(p);
+                            }
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread: threads) {
+            thread.join();
+        }
+        assertEquals(40, successes.get());
+    }
+
+    /**
+     * Tests {@link Query#solveAll(Iterable)} and 
+     * {@link Query#solveBatch(Iterable, String)}.
+     */
+    @Test
+    public void testSolveAll() {
+        List<Object[]> tuples = new ArrayList<Object[]>();
+        for (int i = 0; i < 5; ++i) {
+            tuples.add(new Object[]{i});
+        }
+        BitSet expected = new BitSet();
+        expected.set(1, 4);
+        assertEquals(expected, p.query("member(?, [1, 2, 3]).").solveAll(tuples));
+        assertEquals(expected, p.prepare("member(?, [1, 2, 3]).").solveAll(tuples));
+        assertEquals(Arrays.asList(null, 2, 4, 6, null),
+                p.prepare("member(?, [1, 2, 3]), X is ? * 2.").solveBatch(
+                        Arrays.asList(new Object[]{0, 0}, new Object[]{1, 1}, 
+                                new Object[]{2, 2}, new Object[]{3, 3}, 
+                                new Object[]{4, 4}), "X"));
+    }
+
+    /**
+     * Tests solving a batch of argument tuples by the provers of a pool.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void testSolveAllByPool() throws InterruptedException {
+        ProverPool pool = new ProverPool(3,
+                "mortal(X) :- human(X).",
+                "human(socrates).",
+                "human(plato).");
+        PreparedQuery q = p.prepare("mortal(?), X = ?.");
+        List<Object[]> tuples = new ArrayList<Object[]>();
+        BitSet expected = new BitSet();
+        List<Object> expectedValues = new ArrayList<Object>();
+        for (int i = 0; i < 100; ++i) {
+            String name = i % 3 == 0 ? "socrates" : i % 3 == 1 ? "plato" : "zeus";
+            tuples.add(new Object[]{name, i});
+            if (i % 3 != 2) {
+                expected.set(i);
+            }
+            expectedValues.add(i % 3 != 2 ? i : null);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertEquals(expected, q.solveAll(pool, tuples, executor));
+            assertEquals(expectedValues, q.solveBatch(pool, tuples, "X", executor));
+            assertEquals(new BitSet(), q.solveAll(pool, new ArrayList<Object[]>(), executor));
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(3, pool.getAvailable());
+    }
+
+    /**
+     * Tests {@link Prover#assertAll(String, Iterable)} and 
+     * {@link Prover#assertz(Compound...)}.
+     */
+    @Test
+    public void testAssertAll() {
+        Prover p = ProverFactory.getProver();
+        List<Object[]> rows = new ArrayList<Object[]>();
+        for (int i = 0; i < 2000; ++i) {
+            rows.add(new Object[]{i, "n" + i});
+        }
+        p.assertAll("number_name", rows);
+        assertEquals("n1234", p.solve("number_name(1234, X).").get());
+        assertEquals(2000, p.solve("number_name(X, Y).").toList().size());
+        p.assertz(new Compound("capital", "hungary", "budapest"),
+                new Compound("capital", "austria", "vienna"));
+        assertEquals(Arrays.asList("hungary", "austria"),
+                p.solve("capital(X, _).").toList());
+        p.assertAll("empty", new ArrayList<Object[]>());
+    }
+
+    /**
+     * Tests {@link QueryCache}.
+     */
+    @Test
+    public void testQueryCache() {
+        AbstractProver p = (AbstractProver) ProverFactory.getProver();
+        QueryCache cache = new QueryCache(2);
+        p.setQueryCache(cache);
+        p.addTheory("count(1).", "count(2).");
+        assertEquals(Arrays.asList(1, 2), p.solve("count(X).").toList());
+        assertEquals(Arrays.asList(1, 2), p.solve("count(X).").toList());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertSuccess(p.solve("count(?).", 2));
+        assertFailure(p.solve("count(?).", 3));
+        assertSuccess(p.solve("count(1)."));
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getMissCount());
+        cache.setMaxSize(1);
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(0, cache.getHitCount());
+        p.setQueryCache(null);
+        assertNotSame(cache, p.getQueryCache());
+        assertNotSame(QueryCache.getSharedCache(), p.getQueryCache());
+        assertNotSame(p.getQueryCache(),
+                ((AbstractProver) ProverFactory.getProver()).getQueryCache());
+    }
+
+    /**
+     * Tests {@link Prover#cached(String, String...)}.
+     */
+    @Test
+    public void testCachedQuery() {
+        Prover p = ProverFactory.getProver();
+        p.assertz("parent(tom, bob).");
+        p.assertz("parent(bob, ann).");
+        p.addTheory("ancestor(X, Y) :- parent(X, Y).",
+                "ancestor(X, Y) :- parent(X, Z), ancestor(Z, Y).");
+        CachedQuery q = p.cached("ancestor(?X, Y).", "parent/2");
+        assertEquals(Arrays.asList("bob", "ann"), q.solve("tom").toList());
+        assertEquals(Arrays.asList("bob", "ann"), q.solve("tom").toList());
+        assertFailure(q.solve("ann"));
+        assertEquals(2, q.getMissCount());
+        assertEquals(1, q.getHitCount());
+        p.addTheory("unrelated(x).");
+        assertEquals("bob", q.solve("tom").get());
+        assertEquals(2, q.getMissCount());
+        p.assertz("parent(ann, joe).");
+        assertEquals(Arrays.asList("bob", "ann", "joe"), q.solve("tom").toList());
+        assertEquals(3, q.getMissCount());
+        q.setMaxSize(1);
+        assertEquals(1, q.size());
+
+        CachedQuery all = p.cached("parent(X, Y).");
+        assertEquals(3, all.solve().toList().size());
+        assertEquals("tom", all.solve().get("X"));
+        p.addTheory("unrelated(y).");
+        all.solve();
+        assertEquals(2, all.getMissCount());
+
+        CachedQuery head = p.cached("?L = [X|_].");
+        List<Object> list = new ArrayList<Object>(Arrays.asList("a", "b"));
+        assertEquals("a", head.solve(list).get());
+        list.set(0, "c");
+        assertEquals("c", head.solve(list).get());
+        assertEquals("a", head.solve(Arrays.asList("a", "b")).get());
+        assertEquals(2, head.getMissCount());
+        assertEquals(1, head.getHitCount());
+
+        CachedQuery tail = p.cached("[_|T] = ?L. % Ignored, Not a variable.");
+        List<Object> first = tail.<List<Object>>solve(Arrays.asList("a", "b")).get();
+        assertEquals(Arrays.asList("b"), first);
+        first.add("c");
+        assertEquals(Arrays.asList("b"), tail.<List<Object>>solve(Arrays.asList("a", "b")).get());
+        assertEquals(Arrays.asList("T"), tail.solve(Arrays.asList("a")).getVariables());
+    }
+
+    /**
+     * Tests {@link Prover#solveAsync(String, Object...)}.
+     * 
+     * @throws Exception if the solution is not completed in time
+     */
+    @Test
+    public void testSolveAsync() throws Exception {
+        final Prover p = ProverFactory.getProver();
+        CompletableFuture<List<Object>> members = p.<Object>solveAsync("(X = a ; X = b).")
+                .thenApplyAsync(Solution::toList, p.getExecutor());
+        assertEquals(Arrays.asList("a", "b"), members.get(10, TimeUnit.SECONDS));
+        try {
+            p.solveAsync("(X = a ; X = b").get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof InvalidQueryException);
+        }
+
+        p.assertz("flag(0).");
+        final CountDownLatch latch = new CountDownLatch(1);
+        p.getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        CompletableFuture<Solution<Object>> cancelled = p.solveAsync("retract(flag(0)).");
+        assertTrue(cancelled.cancel(true));
+        latch.countDown();
+        try {
+            cancelled.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (CancellationException e) {
+        }
+        assertSuccess(p.solveAsync("flag(0).").get(10, TimeUnit.SECONDS));
+
+        ExecutorService executor = (ExecutorService) p.getExecutor();
+        Thread worker = executor.submit(Thread::currentThread).get(10, TimeUnit.SECONDS);
+        assertEquals(worker, executor.submit(Thread::currentThread).get(10, TimeUnit.SECONDS));
+        p.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertSuccess(p.solveAsync("flag(0).").get(10, TimeUnit.SECONDS));
+        assertNotSame(executor, p.getExecutor());
+        p.shutdown();
+    }
+
+    /**
+     * Tests {@link Query#withTimeout(java.time.Duration)} and
+     * {@link Prover#setMaxInferences(long)}.
+     */
+    @Test
+    public void testTimeout() {
+        Prover p = ProverFactory.getProver();
+        p.addTheory("loop(0) :- !.", 
+                "loop(N) :- M is N - 1, loop(M).",
+                "spin :- repeat, fail.");
+        Query q = p.query("spin.").withTimeout(Duration.ofMillis(20));
+        try {
+            q.solve();
+            fail();
+        } catch (LimitExceededException e) {
+            assertTrue(e.getGoal().contains("spin"));
+        }
+        assertSuccess(p.query("loop(10).").withTimeout(Duration.ofSeconds(10)).solve());
+        assertSuccess(p.solve("loop(10)."));
+
+        PreparedQuery never = p.prepare("spin.");
+        PreparedQuery limited = never.withTimeout(Duration.ofMillis(20));
+        assertTrue(limited != never);
+        assertEquals(null, never.getTimeout());
+        try {
+            limited.solve();
+            fail();
+        } catch (LimitExceededException e) {
+        }
+
+        p.setTimeout(Duration.ofMillis(20));
+        try {
+            p.solve("spin.");
+            fail();
+        } catch (LimitExceededException e) {
+        }
+        p.setTimeout(null);
+        assertSuccess(p.solve("loop(10)."));
+
+        try {
+            p.setMaxInferences(1000);
+        } catch (UnsupportedOperationException e) {
+            assertEquals(0, p.getMaxInferences());
+            return;
+        }
+        try {
+            p.solve("loop(1000000).");
+            fail();
+        } catch (LimitExceededException e) {
+        }
+        p.setMaxInferences(0);
+        assertSuccess(p.solve("loop(10)."));
+    }
+
+    /**
+     * Tests {@link ProverMetrics}.
+     */
+    @Test
+    public void testMetrics() {
+        ProverMetrics metrics = new ProverMetrics();
+        p.addListener(metrics);
+        try {
+            assertEquals(Arrays.asList("socrates", "plato"), 
+                    p.query("human(X).").<String>solve().toList());
+            assertFalse(p.query("human(zeus).").solve().isSuccess());
+            assertSuccess("member(?, [1, 2]).", 1);
+            assertFailure("member(?, [1, 2]).", 3);
+        } finally {
+            p.removeListener(metrics);
+        }
+        p.query("human(X).").solve().toList();
+
+        ProverMetrics.GoalMetrics m = metrics.getGoalMetrics("human(X).");
+        assertEquals(1, m.getParseCount());
+        assertEquals(1, m.getQueryCount());
+        assertEquals(1, m.getSuccessCount());
+        assertEquals(2, m.getFetchCount());
+        assertEquals(1, m.getCloseCount());
+        assertEquals(2.0, m.getSolutionsPerQuery(), 0.0);
+        assertEquals(2, m.getMaxSolutionsPerQuery());
+        assertEquals(2, m.getConversionCount());
+        assertTrue(m.getLatencyPercentile(0.99) > 0);
+        assertEquals(0, metrics.getGoalMetrics("human(zeus).").getSuccessCount());
+        ProverMetrics.GoalMetrics member = metrics.getGoalMetrics("member(?, [1, 2]).");
+        assertEquals(2, member.getQueryCount());
+        assertEquals(1, member.getSuccessCount());
+        assertEquals(3, metrics.getGoals().size());
+
+        ProverMetrics bounded = new ProverMetrics(1);
+        Prover q = ProverFactory.getProver();
+        q.addListener(bounded);
+        for (int i = 0; i < 3; ++i) {
+            q.assertz("fact(" + i + ").");
+        }
+        assertEquals(1, bounded.getGoals().size());
+        assertEquals(2, bounded.getOverflowMetrics().getQueryCount());
+    }
+
+    /**
+     * Tests the flight recorder events.
+     * 
+     * @throws IOException if the recording cannot be written or read
+     */
+    @Test
+    public void testFlightRecorderEvents() throws IOException {
+        Path file = Files.createTempFile("prolog4j", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String event: new String[]{"Parse", "Solve", "Fetch", "ConvertTerm", 
+                    "ConvertObject"}) {
+                recording.enable("org.prolog4j." + event).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            assertEquals(Arrays.asList("socrates", "plato"), 
+                    p.query("human(X).").<String>solve().toList());
+            assertSuccess("member(a, ?).", Arrays.asList("a", "b", "c"));
+            recording.stop();
+            recording.dump(file);
+            Set<String> events = new HashSet<String>();
+            int objectConversions = 0;
+            for (RecordedEvent event: RecordingFile.readAllEvents(file)) {
+                String name = event.getEventType().getName();
+                events.add(name);
+                assertTrue(event.getString("binding").startsWith("org.prolog4j."));
+                if (name.equals("org.prolog4j.ConvertTerm")) {
+                    assertEquals("X", event.getString("variable"));
+                } else if (name.equals("org.prolog4j.ConvertObject")) {
+                    ++objectConversions;
+                }
+            }
+            assertEquals(1, objectConversions);
+            assertTrue(events.containsAll(Arrays.asList("org.prolog4j.Parse", 
+                    "org.prolog4j.Solve", "org.prolog4j.Fetch", "org.prolog4j.ConvertTerm")));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests {@link Solution#publisher()}.
+     * 
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void testPublisher() throws InterruptedException {
+        final List<Object> values = Collections.synchronizedList(new ArrayList<Object>());
+        final CountDownLatch completed = new CountDownLatch(1);
+        p.<Object>solve("member(X, [a, b, c]).").publisher().subscribe(
+                new Flow.Subscriber<Object>() {
+            private Flow.Subscription subscription;
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+            @Override
+            public void onNext(Object value) {
+                values.add(value);
+                subscription.request(1);
+            }
+            @Override
+            public void onError(Throwable error) {
+            }
+            @Override
+            public void onComplete() {
+                completed.countDown();
+            }
+        });
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.<Object>asList("a", "b", "c"), values);
+
+        values.clear();
+        final CountDownLatch received = new CountDownLatch(2);
+        final Flow.Subscription[] subscription = new Flow.Subscription[1];
+        Prover q = ProverFactory.getProver();
+        q.<Object>solve("(X = a ; X = b ; X = c).").publisher().subscribe(
+                new Flow.Subscriber<Object>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription[0] = s;
+                s.request(2);
+            }
+            @Override
+            public void onNext(Object value) {
+                values.add(value);
+                received.countDown();
+            }
+            @Override
+            public void onError(Throwable error) {
+            }
+            @Override
+            public void onComplete() {
+                fail();
+            }
+        });
+        assertTrue(received.await(10, TimeUnit.SECONDS));
+        subscription[0].cancel();
+        assertEquals(Arrays.<Object>asList("a", "b"), values);
+
+        final CountDownLatch closed = new CountDownLatch(1);
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        Prover r = ProverFactory.getProver();
+        r.addListener(new ProverListener() {
+            @Override
+            public void onClose(String goal, int solutions) {
+                closed.countDown();
+            }
+        });
+        r.<Object>solve("(X = a ; X = b ; X = c).").publisher().subscribe(
+                new Flow.Subscriber<Object>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                s.request(3);
+            }
+            @Override
+            public void onNext(Object value) {
+                throw new IllegalStateException("Broken subscriber.");
+            }
+            @Override
+            public void onError(Throwable error) {
+                errors.add(error);
+            }
+            @Override
+            public void onComplete() {
+                fail();
+            }
+        });
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+        assertEquals(Collections.emptyList(), errors);
+    }
+
+    /**
+     * Tests {@link Prover#loadTheory(Path, TheoryLoadListener)}.
+     * 
+     * @throws IOException if the theory file cannot be written or read
+     */
+    @Test
+    public void testLoadTheoryFile() throws IOException {
+        Path file = Files.createTempFile("theory", ".pl");
+        try {
+            try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                w.write("% A comment. With full stops.\n");
+                w.write("/* Another one. */\n");
+                w.write("quote('a. b').\nquote('end. ').\nquote(0'.).\n");
+                w.write("univ(X, L) :- X =.. L.\n");
+                w.write("num(1.5). % trailing comment\n");
+                w.write("comment(1). /* c */ comment(2)./*c*/comment(3).\n");
+                for (int i = 0; i < 2500; ++i) {
+                    w.write("big(" + i + ").\n");
+                }
+            }
+            final long[] last = new long[3];
+            Prover p = ProverFactory.getProver();
+            p.loadTheory(file, new TheoryLoadListener() {
+                @Override
+                public void progress(long clauses, long bytesRead, long totalBytes) {
+                    last[0] = clauses;
+                    last[1] = bytesRead;
+                    last[2] = totalBytes;
+                }
+            });
+            assertEquals("a. b", p.solve("quote(X).").get());
+            assertEquals(3, p.solve("findall(X, quote(X), L), length(L, N).").getInt("N"));
+            assertSuccess(p.solve("univ(f(a), [f, a])."));
+            assertEquals(1.5, p.solve("num(X).").getDouble(), 1e-9);
+            assertEquals(Arrays.asList(1, 2, 3), p.solve("comment(X).").toList());
+            assertEquals(2500, p.solve("findall(X, big(X), L), length(L, N).").getInt("N"));
+            assertTrue(last[0] == 2508 || last[0] == -1);
+            assertEquals(Files.size(file), last[1]);
+            assertEquals(Files.size(file), last[2]);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests {@link Prover#loadTheory(java.io.InputStream)}.
+     * 
+     * @throws IOException if the theory cannot be read
+     */
+    @Test
+    public void testLoadTheoryStream() throws IOException {
+        StringBuilder theory = new StringBuilder("% A comment.\nstream(a).\n");
+        for (int i = 0; i < 2500; ++i) {
+            theory.append("stream(").append(i).append(").\n");
+        }
+        Prover p = ProverFactory.getProver();
+        p.loadTheory(new ByteArrayInputStream(
+                theory.toString().getBytes(StandardCharsets.UTF_8)));
+        assertEquals("a", p.solve("stream(X).").get());
+        assertEquals(2501, p.solve("findall(X, stream(X), L), length(L, N).").getInt("N"));
+    }
+
     /**
      * Tests the correct behavior of the member/2 predicate.
      */
@@ -212,9 +804,9 @@ public class ProverTest {
     @Test
     public void testTestGet() {
     	Solution<Object> solve = p.solve("member(X, [2, 3, 4]), member(Y, [5, 6, 7]).");
-    	assertEquals(solve.get("X"), 2);
+    	assertEquals(solve.<Object>get("X"), 2);
     	Solution<Object> solve2 = p.solve("member(X, [2, 3, 4]), member(Y, [5, 6, 7]).");
-    	assertEquals(solve.get("Y"), 5);
+    	assertEquals(solve.<Object>get("Y"), 5);
     }
     
     /**
@@ -342,6 +934,54 @@ public class ProverTest {
         assertFailure("?=socrates.", socrates);
     }
 
+    /** A type whose converter is found through the interface hierarchy. */
+    private interface Mortal {
+        String getName();
+    }
+
+    /** Inherits the converter of {@link Mortal}. */
+    private interface Philosopher extends Mortal {
+    }
+
+    /** A class that implements {@link Mortal} only indirectly. */
+    private static class Greek implements Philosopher {
+        private final String name;
+        Greek(String name) {
+            this.name = name;
+        }
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * Tests that the object converters registered to the superinterfaces are
+     * found, and that the registration of a converter overrides the previous
+     * selection.
+     */
+    @Test
+    public void testInterfaceObjectConverters() {
+        final ConversionPolicy cp = p.getConversionPolicy();
+        cp.addObjectConverter(Mortal.class, new Converter<Mortal>() {
+            @Override
+            public Object convert(Mortal mortal) {
+                return cp.term("mortal(?)", mortal.getName());
+            }
+        });
+        Greek socrates = new Greek("socrates");
+        assertSuccess("?=mortal(socrates).", socrates);
+        assertSuccess("?=mortal(socrates).", socrates);
+        cp.addObjectConverter(Philosopher.class, new Converter<Philosopher>() {
+            @Override
+            public Object convert(Philosopher philosopher) {
+                return cp.term("philosopher(?)", philosopher.getName());
+            }
+        });
+        assertSuccess("?=philosopher(socrates).", socrates);
+        assertFailure("?=mortal(socrates).", socrates);
+    }
+
     /**
      * Tests the user defined term converters added to the prover.
      */
@@ -372,6 +1012,127 @@ public class ProverTest {
         assertEquals(new Human("socrates"), socrates);
     }
 
+    /**
+     * Tests the accessors of primitive values.
+     */
+    @Test
+    public void testPrimitiveValues() {
+        Solution<?> solution = p.solve("X = 2, Y is X * 3, Z is 7 / 2.0.");
+        assertEquals(2, solution.getInt("X"));
+        assertEquals(6L, solution.getLong("Y"));
+        assertEquals(3.5, solution.getDouble("Z"), 0.0);
+        assertEquals(2.0, solution.getDouble("X"), 0.0);
+        assertEquals(5, p.solve("X is 2 + 3.").getInt());
+
+        int sum = 0;
+        SolutionIterator<Object> it = p.solve("member(X, [1, 2, 3]).").iterator();
+        while (it.hasNext()) {
+            it.next();
+            sum += it.getInt("X");
+        }
+        assertEquals(6, sum);
+
+        ConversionPolicy cp = p.getConversionPolicy();
+        assertEquals(42L, cp.longValue(cp.term(42L)));
+        assertEquals(1.5, cp.doubleValue(cp.term(1.5f)), 0.0);
+        assertSuccess("?=true.", cp.term(true));
+        assertSuccess("?=false.", cp.term(false));
+        assertSuccess("?=1.", cp.term(1L));
+    }
+
+    /**
+     * Tests the access of the variables by their slots.
+     */
+    @Test
+    public void testSlots() {
+        Solution<?> solution = p.solve("X = 2, Y is X * 3, Z = a.");
+        int x = solution.slotOf("X");
+        int y = solution.slotOf("Y");
+        int z = solution.slotOf("Z");
+        assertEquals(x, solution.slotOf("X"));
+        assertEquals(2, solution.getInt(x));
+        assertEquals(6L, solution.getLong(y));
+        assertEquals(6.0, solution.getDouble(y), 0.0);
+        assertEquals("a", solution.get(z));
+        assertEquals("a", solution.get(z, String.class));
+
+        int sum = 0;
+        SolutionIterator<Object> it = p.solve("member(X-Y, [1-a, 2-b, 3-c]).").iterator();
+        int slot = -1;
+        while (it.hasNext()) {
+            it.next();
+            if (slot == -1) {
+                slot = it.slotOf("X");
+            }
+            sum += it.getInt(slot);
+        }
+        assertEquals(6, sum);
+    }
+
+    /**
+     * Tests {@link Solution#slotOf(String)} with a variable that does not
+     * occur in the goal.
+     */
+    @Test(expected = UnknownVariableException.class)
+    public void testUnknownSlot() {
+        Solution<?> solution = p.solve("X = 1.");
+        solution.get(solution.slotOf("Y"));
+    }
+
+    /**
+     * Tests {@link Solution#stream()}.
+     */
+    @Test
+    public void testStream() {
+        List<String> mortals = p.<String>solve("mortal(X).").stream()
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("socrates", "plato"), mortals);
+        assertEquals(0, p.solve("mortal(zeus).").stream().count());
+        assertEquals(Arrays.asList(3, 4), p.<Integer>solve("member(X, [1, 2, 3, 4, 5]).")
+                .stream().filter(i -> i > 2).limit(2).collect(Collectors.toList()));
+        try (Stream<Object> s = p.solve("member(X, [1, 2, 3]).").stream()) {
+            assertEquals(1, s.findFirst().get());
+        }
+        assertEquals(Arrays.asList(1, 2), p.solve("member(X, [1, 2]).").toList());
+    }
+
+    /**
+     * Tests {@link Solution#close()}.
+     */
+    @Test
+    public void testClose() {
+        try (Solution<Object> solution = p.solve("member(X, [1, 2, 3]).")) {
+            assertEquals(1, solution.get());
+        }
+        Solution<Object> solution = p.solve("member(X, [4, 5, 6]).");
+        SolutionIterator<Object> it = solution.iterator();
+        assertEquals(4, it.next());
+        solution.close();
+        solution.close();
+        assertEquals(Arrays.asList(1, 2), p.solve("member(X, [1, 2]).").toList());
+
+        Solution<Object> stale = p.solve("member(X, [1, 2, 3]).");
+        Solution<Object> current = p.solve("member(X, [4, 5, 6]).");
+        stale.close();
+        assertEquals(Arrays.asList(4, 5, 6), current.toList());
+
+        final List<String> closed = new ArrayList<String>();
+        ProverListener listener = new ProverListener() {
+            @Override
+            public void onClose(String goal, int solutions) {
+                closed.add(goal);
+            }
+        };
+        p.addListener(listener);
+        try {
+            assertFalse(p.solve("member(X, []).").iterator().hasNext());
+            assertEquals(0, p.solve("member(X, []).").stream().count());
+        } finally {
+            p.removeListener(listener);
+        }
+        assertEquals(Arrays.asList("member(X, []).", "member(X, [])."), closed);
+    }
+
     /**
      * Tests {@link Solution#on(String)} and the conversion of the result 
      * into a list.
@@ -459,6 +1220,103 @@ public class ProverTest {
         assertEquals(romansExpected, romans);
     }
 
+    /**
+     * Tests that a named prover is created only once if it is requested by 
+     * several threads at the same time.
+     *
+     * @throws Exception if a thread fails
+     */
+    @Test
+    public void testNamedProverConcurrently() throws Exception {
+        final String name = "org.prolog4j.ProverTest.concurrent";
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Prover>> provers = new ArrayList<Future<Prover>>();
+            for (int i = 0; i < 8; ++i) {
+                provers.add(executor.submit(new Callable<Prover>() {
+                    @Override
+                    public Prover call() throws InterruptedException {
+                        start.await();
+                        return ProverFactory.getProver(name);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Prover> prover: provers) {
+                assertTrue(prover.get(10, TimeUnit.SECONDS) == ProverFactory.getProver(name));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests borrowing provers from a {@link ProverPool} by several threads.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test
+    public void testProverPool() throws InterruptedException {
+        final ProverPool pool = new ProverPool(2,
+                "mortal(X) :- human(X).",
+                "human(socrates).",
+                "human(plato).");
+        assertEquals(2, pool.getSize());
+        Prover p1 = pool.acquire();
+        Prover p2 = pool.acquire();
+        assertTrue(p1 != p2);
+        assertEquals(null, pool.acquire(0, TimeUnit.MILLISECONDS));
+        assertSuccess(p1.solve("mortal(socrates)."));
+        assertFailure(p2.solve("mortal(zeus)."));
+        pool.release(p1);
+        pool.release(p2);
+        assertEquals(2, pool.getAvailable());
+
+        final AtomicInteger successes = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10; ++j) {
+                        try {
+                            Prover p = pool.acquire();
+                            try {
+                                if (p.solve("mortal(?).", "plato").isSuccess()) {
+                                    successes.incrementAndGet();
+                                }
+                            } finally {
+                                pool.release(p);
+                            }
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread: threads) {
+            thread.join();
+        }
+        assertEquals(40, successes.get());
+        assertEquals(2, pool.getAvailable());
+    }
+
+    /**
+     * Tests that a prover cannot be released twice.
+     *
+     * @throws InterruptedException if the test is interrupted
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testProverPoolDoubleRelease() throws InterruptedException {
+        ProverPool pool = new ProverPool(1);
+        Prover p = pool.acquire();
+        pool.release(p);
+        pool.release(p);
+    }
+
     /**
      * Tests the format elements.
      */
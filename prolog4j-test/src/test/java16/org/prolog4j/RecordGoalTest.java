@@ -0,0 +1,50 @@
+package org.prolog4j;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.prolog4j.annotations.Bind;
+import org.prolog4j.annotations.Goal;
+
+/**
+ * Tests the mapping of the solutions of goal methods to records. It is 
+ * compiled only on Java 16 and later.
+ */
+public class RecordGoalTest {
+
+	public record Point(int x, @Bind("Z") long y) {
+	}
+
+	public record Named(String name, double weight) {
+	}
+
+	@Test
+	public void testRecords() {
+		List<Point> points = goalPoints();
+		Assert.assertEquals(List.of(new Point(1, 2L), new Point(3, 4L)), points);
+		Assert.assertEquals(List.of(new Point(3, 4L)), 
+				goalPointStream(3).collect(Collectors.toList()));
+		Assert.assertEquals(Optional.of(new Named("a", 1.5)), goalNamed("a"));
+		Assert.assertEquals(Optional.empty(), goalNamed("b"));
+	}
+
+	@Goal("(X = 1, Z = 2 ; X = 3, Z = 4).")
+	public List<Point> goalPoints() {
+		return null;
+	}
+
+	@Goal("(X = 1, Z = 2 ; X = 3, Z = 4), X >= ?.")
+	public Stream<Point> goalPointStream(int min) {
+		return null;
+	}
+
+	@Goal("Name = ?, Name == a, Weight = 1.5.")
+	public Optional<Named> goalNamed(String name) {
+		return Optional.empty();
+	}
+
+}
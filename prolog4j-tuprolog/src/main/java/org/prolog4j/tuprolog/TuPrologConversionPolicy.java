@@ -54,6 +54,10 @@ public class TuPrologConversionPolicy extends ConversionPolicy {
 			return new Int(i);
 		}
 	};
+	/** The <tt>true</tt> atom. */
+	private static final Struct TRUE = new Struct("true");
+	/** The <tt>false</tt> atom. */
+	private static final Struct FALSE = new Struct("false");
 	/** Converts a Long object to a term. */
 	private static final Converter<Long> LONG_CONVERTER = new Converter<Long>() {
 		@Override
@@ -230,11 +234,26 @@ public class TuPrologConversionPolicy extends ConversionPolicy {
 		return new Int(value);
 	}
 
+	@Override
+	public Object term(long value) {
+		return new alice.tuprolog.Long(value);
+	}
+
+	@Override
+	public Object term(float value) {
+		return new alice.tuprolog.Float(value);
+	}
+
 	@Override
 	public Object term(double value) {
 		return new alice.tuprolog.Double(value);
 	}
 
+	@Override
+	public Object term(boolean value) {
+		return value ? TRUE : FALSE;
+	}
+
 	@Override
 	public Object term(String name) {
 		try {
@@ -301,6 +320,11 @@ public class TuPrologConversionPolicy extends ConversionPolicy {
 		return ((alice.tuprolog.Number) term).intValue();
 	}
 
+	@Override
+	public long longValue(Object term) {
+		return ((alice.tuprolog.Number) term).longValue();
+	}
+
 	@Override
 	public double doubleValue(Object term) {
 		return ((alice.tuprolog.Number) term).doubleValue();
@@ -0,0 +1,135 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.tuprolog;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.prolog4j.ConversionPolicy;
+import org.prolog4j.InvalidQueryException;
+import org.prolog4j.PreparedQuery;
+import org.prolog4j.Prover;
+import org.prolog4j.Solution;
+
+import alice.tuprolog.InvalidTermException;
+import alice.tuprolog.Parser;
+import alice.tuprolog.Struct;
+import alice.tuprolog.Term;
+import alice.tuprolog.Var;
+
+/**
+ * The tuProlog implementation of the PreparedQuery class. The goal is parsed
+ * once into a template that is never modified. Every invocation solves a fresh
+ * copy of the template, since tuProlog binds the variables of the goal in 
+ * place.
+ */
+public class TuPrologPreparedQuery extends PreparedQuery {
+
+	/** The parsed goal. It is copied before solving. */
+	private final Term template;
+
+	/** The names of the placeholder variables of the goal. */
+	private final String[] placeholderNames;
+
+	/**
+	 * Creates a tuProlog prepared query object.
+	 * 
+	 * @param prover the tuProlog prover that prepares the query
+	 * @param goal the Prolog goal to be solved
+	 */
+	TuPrologPreparedQuery(TuPrologProver prover, String goal) {
+		super(prover, goal);
+		List<String> names = getPlaceholderNames();
+		placeholderNames = names.toArray(new String[names.size()]);
+		try {
+			template = new Parser(getGoal()).nextTerm(true);
+		} catch (InvalidTermException e) {
+			throw new InvalidQueryException(goal, e);
+		}
+		if (!(template instanceof Struct)) {
+			throw new InvalidQueryException(goal);
+		}
+	}
+
+	@Override
+	public <A> Solution<A> solve(Prover prover, Object... actualArgs) {
+		TuPrologProver tuProver = (TuPrologProver) prover;
+		ConversionPolicy cp = tuProver.getConversionPolicy();
+		Map<String, Var> vars = new HashMap<String, Var>();
+		Term goal = copy(template, vars);
+		for (int i = 0; i < placeholderNames.length; ++i) {
+			String name = placeholderNames[i];
+			Var var = vars.get(name);
+			if (var == null) {
+				var = new Var(name);
+				vars.put(name, var);
+			}
+			goal = new Struct(",", 
+					new Struct("=", var, (Term) cp.convertObject(actualArgs[i])), 
+					goal);
+		}
+		goal.resolveTerm();
+		return new TuPrologSolution<A>(tuProver, goal, this);
+	}
+
+	/**
+	 * Copies a term of the template. Variables with the same name are mapped
+	 * to the same new variable, anonymous variables to distinct ones. Numbers
+	 * are immutable, so they are shared.
+	 * 
+	 * @param term the term to copy
+	 * @param vars the variables created so far, by their names
+	 * @return the copy of the term
+	 */
+	private static Term copy(Term term, Map<String, Var> vars) {
+		if (term instanceof Var) {
+			Var var = (Var) term;
+			if (var.isAnonymous()) {
+				return new Var();
+			}
+			String name = var.getOriginalName();
+			Var copy = vars.get(name);
+			if (copy == null) {
+				copy = new Var(name);
+				vars.put(name, copy);
+			}
+			return copy;
+		}
+		if (term instanceof Struct) {
+			Struct struct = (Struct) term;
+			int arity = struct.getArity();
+			if (arity == 0) {
+				return new Struct(struct.getName());
+			}
+			Term[] args = new Term[arity];
+			for (int i = 0; i < arity; ++i) {
+				args[i] = copy(struct.getArg(i), vars);
+			}
+			return new Struct(struct.getName(), args);
+		}
+		return term;
+	}
+
+}
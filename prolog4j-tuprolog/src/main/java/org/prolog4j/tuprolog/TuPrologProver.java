@@ -25,13 +25,22 @@ package org.prolog4j.tuprolog;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 
 import org.prolog4j.AbstractProver;
+import org.prolog4j.Compound;
+import org.prolog4j.ConversionPolicy;
+import org.prolog4j.PreparedQuery;
 import org.prolog4j.Query;
 
 import alice.tuprolog.InvalidLibraryException;
 import alice.tuprolog.InvalidTheoryException;
 import alice.tuprolog.Prolog;
+import alice.tuprolog.Struct;
+import alice.tuprolog.Term;
 import alice.tuprolog.Theory;
 
 /**
@@ -56,12 +65,21 @@ public class TuPrologProver extends AbstractProver {
 	/** Class version for serialization. */
 	private static final long serialVersionUID = 1L;
 
+	/** The maximal number of clauses added to the engine as one theory. */
+	private static final int CLAUSE_BATCH = 1024;
+
 	/**
 	 * The tuProlog engine that is used for storing the knowledge base and
 	 * solving queries on it.
 	 */
 	private final Prolog engine;
 
+	/**
+	 * The solution whose alternatives are open in the engine, or 
+	 * <tt>null</tt>. Only this solution is allowed to release them.
+	 */
+	private transient Object openSolution;
+
 	/**
 	 * Creates a tuProlog prover.
 	 */
@@ -79,9 +97,58 @@ public class TuPrologProver extends AbstractProver {
 		return engine;
 	}
 
+	/**
+	 * Registers the solution whose alternatives are open in the engine.
+	 * 
+	 * @param solution the most recent solution
+	 */
+	void setOpenSolution(Object solution) {
+		openSolution = solution;
+	}
+
+	/**
+	 * Tells whether the alternatives open in the engine belong to the given
+	 * solution. If so, the solution is unregistered.
+	 * 
+	 * @param solution the solution to check
+	 * @return <tt>true</tt> if the alternatives belong to the solution
+	 */
+	boolean releaseOpenSolution(Object solution) {
+		if (openSolution != solution) {
+			return false;
+		}
+		openSolution = null;
+		return true;
+	}
+
 	@Override
 	public Query query(String goal) {
-		return new TuPrologQuery(this, goal);
+		long start = parseStart();
+		return parsed(new TuPrologQuery(this, goal), start);
+	}
+
+	@Override
+	public PreparedQuery prepare(String goal) {
+		long start = parseStart();
+		return parsed(new TuPrologPreparedQuery(this, goal), start);
+	}
+
+	/**
+	 * Stops the demonstration running in the engine. The goal fails as if it
+	 * had no solution.
+	 */
+	@Override
+	protected void halt() {
+		engine.solveHalt();
+	}
+
+	/**
+	 * {@inheritDoc} Overridden to be accessible to the solutions.
+	 */
+	@Override
+	protected <T> T solveWithin(Object goal, Duration timeout, 
+			Supplier<T> engineCall) {
+		return super.solveWithin(goal, timeout, engineCall);
 	}
 
 	@Override
@@ -99,6 +166,8 @@ public class TuPrologProver extends AbstractProver {
 			engine.addTheory(new Theory(input));
 		} catch (InvalidTheoryException e) {
 			e.printStackTrace();
+		} finally {
+			theoryModified();
 		}
 	}
 
@@ -108,6 +177,70 @@ public class TuPrologProver extends AbstractProver {
 			engine.addTheory(new Theory(theory));
 		} catch (InvalidTheoryException e) {
 			e.printStackTrace();
+		} finally {
+			clausesModified(theory);
+		}
+	}
+
+	@Override
+	public void assertz(Compound... facts) {
+		ConversionPolicy cp = getConversionPolicy();
+		List<Term> clauses = new ArrayList<Term>(Math.min(facts.length, CLAUSE_BATCH));
+		try {
+			for (Compound fact: facts) {
+				clauses.add((Term) cp.convertObject(fact));
+				if (clauses.size() == CLAUSE_BATCH) {
+					addClauses(clauses);
+				}
+			}
+			addClauses(clauses);
+		} finally {
+			for (Compound fact: facts) {
+				theoryModified(fact.getFunctor());
+			}
+		}
+	}
+
+	@Override
+	public void assertAll(String functor, Iterable<Object[]> rows) {
+		ConversionPolicy cp = getConversionPolicy();
+		List<Term> clauses = new ArrayList<Term>(CLAUSE_BATCH);
+		try {
+			for (Object[] row: rows) {
+				Term[] args = new Term[row.length];
+				for (int i = 0; i < args.length; ++i) {
+					args[i] = (Term) cp.convertObject(row[i]);
+				}
+				clauses.add(new Struct(functor, args));
+				if (clauses.size() == CLAUSE_BATCH) {
+					addClauses(clauses);
+				}
+			}
+			addClauses(clauses);
+		} finally {
+			theoryModified(functor);
+		}
+	}
+
+	/**
+	 * Adds the clauses to the database of the engine, as a theory built from
+	 * a clause list, and empties the list.
+	 * 
+	 * @param clauses the clauses to add
+	 */
+	private void addClauses(List<Term> clauses) {
+		if (clauses.isEmpty()) {
+			return;
+		}
+		Struct clauseList = new Struct();
+		for (int i = clauses.size() - 1; i >= 0; --i) {
+			clauseList = new Struct(clauses.get(i), clauseList);
+		}
+		clauses.clear();
+		try {
+			engine.addTheory(new Theory(clauseList));
+		} catch (InvalidTheoryException e) {
+			throw new RuntimeException(e);
 		}
 	}
 
@@ -121,6 +254,8 @@ public class TuPrologProver extends AbstractProver {
 			engine.addTheory(new Theory(sb.toString()));
 		} catch (InvalidTheoryException e) {
 			e.printStackTrace();
+		} finally {
+			clausesModified(theory);
 		}
 	}
 
@@ -104,7 +104,12 @@ public class TuPrologQuery extends Query {
 			var.free();
 			engine.unify(var, (Term) cp.convertObject(actualArgs[i++]));
 		}
-		return new TuPrologSolution<A>(prover, sGoal);
+		return new TuPrologSolution<A>(prover, sGoal, this);
+	}
+
+	@Override
+	protected void halt() {
+		prover.halt();
 	}
 
 	@Override
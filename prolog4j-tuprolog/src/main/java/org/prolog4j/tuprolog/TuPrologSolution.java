@@ -25,12 +25,15 @@ package org.prolog4j.tuprolog;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.Supplier;
 
 import org.prolog4j.ConversionPolicy;
-import org.prolog4j.Prover;
+import org.prolog4j.LimitExceededException;
 import org.prolog4j.ProverFactory;
+import org.prolog4j.Query;
 import org.prolog4j.Solution;
 import org.prolog4j.SolutionIterator;
 import org.prolog4j.UnknownVariableException;
@@ -52,7 +55,7 @@ import alice.tuprolog.Var;
 public class TuPrologSolution<S> extends Solution<S> {
 
 	/** The tuProlog prover that is used for solving this query. */
-	private Prover prover;
+	private final TuPrologProver prover;
 
 	/** The conversion policy of the tuProlog prover that is used for solving this query. */
 	private final ConversionPolicy cp;
@@ -74,18 +77,38 @@ public class TuPrologSolution<S> extends Solution<S> {
 	/** True if the query has a solution, otherwise false. */
 	private final boolean success;
 
+	/** The goal to be solved. */
+	private final Term goal;
+
 	/**
 	 * Creates an object, using which the solutions of a query can be accessed.
 	 * 
 	 * @param prover the tuProlog prover
 	 * @param goal the goal to be solved
+	 * @param query the query to solve
 	 */
-	TuPrologSolution(TuPrologProver prover, Term goal) {
+	TuPrologSolution(TuPrologProver prover, final Term goal, Query query) {
+		super(prover, query);
 		this.prover = prover;
 		this.cp = prover.getConversionPolicy();
 		this.engine = prover.getEngine();
-		solution = engine.solve(goal);
+		this.goal = goal;
+		try {
+			solution = prover.solveWithin(goal, getTimeout(), 
+					new Supplier<SolveInfo>() {
+				@Override
+				public SolveInfo get() {
+					return engine.solve(goal);
+				}
+			});
+		} catch (LimitExceededException e) {
+			prover.setOpenSolution(this);
+			close();
+			throw e;
+		}
 		success = solution.isSuccess();
+		solved(success);
+		prover.setOpenSolution(this);
 		if (!success) {
 			return;
 		}
@@ -115,42 +138,131 @@ public class TuPrologSolution<S> extends Solution<S> {
 		return vars.get(varIndex).getOriginalName();
 	}
 
-	@Override
-	public <A> A get(String variable) {
+	/**
+	 * Returns the term bound to the given variable by the current solution.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the value of the variable
+	 */
+	private Term term(String variable) {
 		try {
-			if (clazz == null) {
-				Term term = solution.getVarValue(variable);
-				if (term == null) {
-					throw new UnknownVariableException(variable);
-				}
-				return (A) cp.convertTerm(term);
+			Term term = solution.getVarValue(variable);
+			if (term == null) {
+				throw new UnknownVariableException(variable);
 			}
-			return (A) get(variable, clazz);
+			return term;
 		} catch (NoSolutionException e) {
 			throw new NoSuchElementException();
 		}
 	}
 
+	@Override
+	public <A> A get(String variable) {
+		if (clazz == null) {
+			return convert(cp, variable, term(variable), null);
+		}
+		return (A) get(variable, clazz);
+	}
+
 	@Override
 	public <A> A get(String variable, Class<A> type) {
-		try {
-			Term term = solution.getVarValue(variable);
-			if (term == null) {
-				throw new UnknownVariableException(variable);
+		return convert(cp, variable, term(variable), type);
+	}
+
+	@Override
+	public int getInt(String variable) {
+		return cp.intValue(term(variable));
+	}
+
+	@Override
+	public long getLong(String variable) {
+		return cp.longValue(term(variable));
+	}
+
+	@Override
+	public double getDouble(String variable) {
+		return cp.doubleValue(term(variable));
+	}
+
+	@Override
+	public List<String> getVariables() {
+		if (vars == null) {
+			return Collections.emptyList();
+		}
+		List<String> names = new ArrayList<String>(vars.size());
+		for (int i = 0; i < vars.size(); ++i) {
+			names.add(varName(i));
+		}
+		return Collections.unmodifiableList(names);
+	}
+
+	/**
+	 * The slots are the indices of the variables in {@link #vars}, which is
+	 * also the order of the bindings of each solution, so the value of a 
+	 * variable is read without looking it up by name.
+	 */
+	@Override
+	public int slotOf(String variable) {
+		if (vars != null) {
+			for (int i = 0; i < vars.size(); ++i) {
+				if (varName(i).equals(variable)) {
+					return i;
+				}
 			}
-			return (A) cp.convertTerm(term, type);
+		}
+		throw new UnknownVariableException(variable);
+	}
+
+	/**
+	 * Returns the term bound to the variable of the given slot by the current 
+	 * solution.
+	 * 
+	 * @param slot the slot of the variable
+	 * @return the value of the variable
+	 */
+	private Term term(int slot) {
+		try {
+			return solution.getBindingVars().get(slot).getTerm();
 		} catch (NoSolutionException e) {
 			throw new NoSuchElementException();
 		}
 	}
 
+	@Override
+	public <A> A get(int slot) {
+		if (clazz == null) {
+			return convert(cp, varName(slot), term(slot), null);
+		}
+		return (A) get(slot, clazz);
+	}
+
+	@Override
+	public <A> A get(int slot, Class<A> type) {
+		return convert(cp, varName(slot), term(slot), type);
+	}
+
+	@Override
+	public int getInt(int slot) {
+		return cp.intValue(term(slot));
+	}
+
+	@Override
+	public long getLong(int slot) {
+		return cp.longValue(term(slot));
+	}
+
+	@Override
+	public double getDouble(int slot) {
+		return cp.doubleValue(term(slot));
+	}
+
 	@Override
 	public void collect(Collection... collections) {
 		SolutionIterator<S> it = iterator();
 		while (it.hasNext()) {
 			it.next();
 			for (int i = 0; i < collections.length; ++i) {
-				collections[i].add(it.get(varName(i)));
+				collections[i].add(it.get(i));
 			}
 		}
 	}
@@ -167,16 +279,43 @@ public class TuPrologSolution<S> extends Solution<S> {
 
 	@Override
 	protected boolean fetch() {
+		if (!engine.hasOpenAlternatives()) {
+			return false;
+		}
 		try {
-			boolean hasNext = engine.hasOpenAlternatives()
-					&& (solution = engine.solveNext()).isSuccess();
-//			if (!hasNext)
-//				engine.solveHalt();
-			return hasNext;
-		} catch (NoMoreSolutionException e) {
-			// Should not happen.
-			throw new IllegalStateException(e);
+			solution = prover.solveWithin(goal, getTimeout(), 
+					new Supplier<SolveInfo>() {
+				@Override
+				public SolveInfo get() {
+					try {
+						return engine.solveNext();
+					} catch (NoMoreSolutionException e) {
+						// Should not happen.
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+		} catch (LimitExceededException e) {
+			close();
+			throw e;
 		}
+		boolean hasNext = solution.isSuccess();
+//		if (!hasNext)
+//			engine.solveHalt();
+		return hasNext;
+	}
+
+	@Override
+	public void close() {
+		if (prover.releaseOpenSolution(this) && engine.hasOpenAlternatives()) {
+			engine.solveEnd();
+		}
+		closed();
+	}
+
+	@Override
+	protected void halt() {
+		prover.halt();
 	}
 
 }